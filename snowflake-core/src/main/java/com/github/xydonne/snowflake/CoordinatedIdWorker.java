@@ -0,0 +1,121 @@
+package com.github.xydonne.snowflake;
+
+/**
+ * 由WorkerIdAllocator分配节点ID的IdWorker
+ * 节点ID丢失时释放并重新分配节点ID,关闭时释放节点ID并记录最后时间,关闭后不能再生成ID
+ *
+ * @author Donney
+ **/
+public class CoordinatedIdWorker extends IdWorker {
+
+    private final WorkerIdAllocator allocator;
+
+    private final WorkerIdAllocator.Listener listener;
+
+    private boolean closed = false;
+
+    //节点ID已丢失且尚未重新分配
+    private boolean lost = false;
+
+    /**
+     * 构造方法
+     *
+     * @param allocator 节点ID分配器
+     */
+    public CoordinatedIdWorker(WorkerIdAllocator allocator) {
+        this(allocator, 0L, 1L);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param allocator           节点ID分配器
+     * @param epoch               时间起始标记点
+     * @param refreshTimeAfterNTP 当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+     */
+    public CoordinatedIdWorker(WorkerIdAllocator allocator, long epoch, long refreshTimeAfterNTP) {
+        super(0L, epoch, refreshTimeAfterNTP);
+        this.allocator = allocator;
+        this.listener = new WorkerIdAllocator.Listener() {
+            @Override
+            public void workerIdLost(long workerId) {
+                reassign(workerId);
+            }
+        };
+        setWorkerID(allocator.acquire(listener));
+    }
+
+    /**
+     * 关闭后抛出IllegalStateException,避免以已释放的节点ID生成ID
+     * 节点ID丢失后未能重新分配时,先重新分配,仍失败则抛出异常
+     */
+    @Override
+    public synchronized long getId() {
+        checkOpen();
+        return super.getId();
+    }
+
+    /**
+     * 关闭后抛出IllegalStateException,避免以已释放的节点ID生成ID
+     */
+    @Override
+    public synchronized void getIds(long[] ids, int offset, int length) {
+        checkOpen();
+        super.getIds(ids, offset, length);
+    }
+
+    /**
+     * 是否已关闭
+     *
+     * @return 是否已关闭
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 节点ID是否仍由分配器持有
+     *
+     * @return 是否持有
+     */
+    public boolean isRegistered() {
+        return allocator.isHeld(getWorkerId());
+    }
+
+    /**
+     * 写入生成记录,释放节点ID并记录最后时间,关闭后不会再重新分配节点ID
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flushJournal();
+        allocator.release(getWorkerId(), getLastTimestamp());
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The worker id " + getWorkerId() + " is released! The snowflake is closed.");
+        }
+        if (lost) {
+            setWorkerID(allocator.acquire(listener));
+            lost = false;
+        }
+    }
+
+    /**
+     * 节点ID丢失后,释放并重新分配节点ID
+     * 整个过程持有锁,完成前不会以已丢失的节点ID生成ID;分配失败时由下次生成ID时重新分配
+     */
+    private synchronized void reassign(long lostWorkerId) {
+        if (closed || lost || lostWorkerId != getWorkerId()) {
+            return;
+        }
+        lost = true;
+        allocator.release(lostWorkerId, getLastTimestamp());
+        setWorkerID(allocator.acquire(listener));
+        lost = false;
+    }
+
+}
@@ -0,0 +1,340 @@
+package com.github.xydonne.snowflake;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按负载伸缩节点ID数量的Snowflake,单个节点ID每毫秒最多生成4096个ID,超过后只能等待下一毫秒
+ * 定时统计sequence用尽的频率,超过扩容阈值时从分配器再分配一个节点ID
+ * 与SnowflakePool相同,每个线程按探针值固定使用一个IdWorker,节点ID数量不变时同一线程得到的ID递增;
+ * 节点ID数量变化后线程可能改用另一个IdWorker,此时不保证与之前得到的ID递增
+ * 单个热点线程只使用一个节点ID,扩容对其无效;上一次扩容既没有降低用尽的频率也没有提高吞吐量时不再扩容,直至负载回落到扩容阈值以下
+ * 负载连续多个周期低于缩容阈值时移除一个节点ID,下一周期再释放,使仍在使用它的线程先完成生成
+ * 扩容按sequence用尽的频率判断,缩容按每秒生成的ID数量判断,两者相互独立,扩容后不会因为不再用尽而立即缩容
+ *
+ * @author Donney
+ **/
+public class ElasticSnowflake implements Snowflake {
+
+    //默认统计周期(单位:毫秒)
+    private static final long DEFAULT_INTERVAL_MS = 1000L;
+
+    //默认扩容阈值: 每秒sequence用尽50次,即5%的毫秒已达到单个节点ID的上限
+    private static final long DEFAULT_SCALE_UP_EXHAUSTED_PER_SECOND = 50L;
+
+    //默认缩容阈值: 移除一个节点ID后,平均每个节点ID每秒生成的ID数量低于单个节点ID上限的25%
+    private static final long DEFAULT_SCALE_DOWN_IDS_PER_WORKER = (IdWorker.MAX_SEQUENCE + 1) * 1000L / 4;
+
+    //默认缩容前负载需连续低于阈值的周期数
+    private static final int DEFAULT_COOL_DOWN_INTERVALS = 30;
+
+    private final WorkerIdAllocator allocator;
+
+    private final int maxWorkers;
+
+    private final long epoch;
+
+    private final long refreshTimeAfterNTP;
+
+    private final long scaleUpExhaustedPerSecond;
+
+    private final long scaleDownIdsPerWorker;
+
+    private final int coolDownIntervals;
+
+    private final ScheduledExecutorService scheduler;
+
+    //正在使用的IdWorker,只在末尾增加或移除
+    private volatile SnowflakePool.PaddedIdWorker[] workers;
+
+    //已移除,等待下一周期释放的IdWorker
+    private final List<SnowflakePool.PaddedIdWorker> retired = new ArrayList<>();
+
+    //已释放的IdWorker的sequence用尽次数与生成ID数量
+    private long releasedExhaustedCount = 0L;
+
+    private long releasedGeneratedCount = 0L;
+
+    //上一周期的统计值
+    private long lastSampleTime;
+
+    private long lastExhaustedCount = 0L;
+
+    private long lastGeneratedCount = 0L;
+
+    //负载连续低于缩容阈值的周期数
+    private int calmIntervals = 0;
+
+    //上一次扩容时每秒sequence用尽的次数,-1表示负载回落后尚未扩容
+    private long scaledUpExhaustedPerSecond = -1L;
+
+    //上一次扩容时每秒生成的ID数量
+    private long scaledUpIdsPerSecond = 0L;
+
+    //上一次扩容前的节点ID数量
+    private int scaledUpWorkers = 0;
+
+    //生成记录
+    private GenerationJournal journal;
+
+    private volatile boolean closed = false;
+
+    /**
+     * 构造方法
+     *
+     * @param allocator  节点ID分配器
+     * @param maxWorkers 最多使用的节点ID数量
+     */
+    public ElasticSnowflake(WorkerIdAllocator allocator, int maxWorkers) {
+        this(allocator, maxWorkers, 0L, 1L, DEFAULT_INTERVAL_MS, DEFAULT_SCALE_UP_EXHAUSTED_PER_SECOND, DEFAULT_SCALE_DOWN_IDS_PER_WORKER, DEFAULT_COOL_DOWN_INTERVALS);
+    }
+
+    /**
+     * 构造方法,先分配一个节点ID
+     *
+     * @param allocator                 节点ID分配器
+     * @param maxWorkers                最多使用的节点ID数量
+     * @param epoch                     时间起始标记点
+     * @param refreshTimeAfterNTP       当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+     * @param intervalMs                统计周期(单位:毫秒)
+     * @param scaleUpExhaustedPerSecond 扩容阈值,每秒sequence用尽的次数
+     * @param scaleDownIdsPerWorker     缩容阈值,移除一个节点ID后平均每个节点ID每秒生成的ID数量
+     * @param coolDownIntervals         缩容前负载需连续低于阈值的周期数
+     */
+    public ElasticSnowflake(WorkerIdAllocator allocator, int maxWorkers, long epoch, long refreshTimeAfterNTP, long intervalMs,
+                            long scaleUpExhaustedPerSecond, long scaleDownIdsPerWorker, int coolDownIntervals) {
+        if (maxWorkers < 1 || maxWorkers > IdWorker.MAX_WORKER_ID + 1) {
+            throw new IllegalArgumentException(String.format("maxWorkers can't be greater than %d or less than 1", IdWorker.MAX_WORKER_ID + 1));
+        }
+        if (intervalMs < 1) {
+            throw new IllegalArgumentException("intervalMs cannot be less than 1!");
+        }
+        if (coolDownIntervals < 1) {
+            throw new IllegalArgumentException("coolDownIntervals cannot be less than 1!");
+        }
+        this.allocator = allocator;
+        this.maxWorkers = maxWorkers;
+        this.epoch = epoch;
+        this.refreshTimeAfterNTP = refreshTimeAfterNTP;
+        this.scaleUpExhaustedPerSecond = scaleUpExhaustedPerSecond;
+        this.scaleDownIdsPerWorker = scaleDownIdsPerWorker;
+        this.coolDownIntervals = coolDownIntervals;
+        this.workers = new SnowflakePool.PaddedIdWorker[]{new SnowflakePool.PaddedIdWorker(allocator, epoch, refreshTimeAfterNTP)};
+        this.lastSampleTime = System.currentTimeMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "snowflake-elastic");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebalance();
+                } catch (RuntimeException ignored) {
+                    //分配失败(如节点已满)时保持当前数量,下一周期重试
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 获取当前线程使用的IdWorker的节点ID
+     */
+    @Override
+    public long getWorkerId() {
+        return current().getWorkerId();
+    }
+
+    /**
+     * 节点ID由分配器管理,不能直接设置
+     */
+    @Override
+    public void setWorkerID(long workerID) {
+        throw new UnsupportedOperationException("The worker ids of an elastic snowflake are managed by its allocator!");
+    }
+
+    /**
+     * 获取当前线程使用的IdWorker的最后更新时间
+     */
+    @Override
+    public long getLastTimestamp() {
+        return current().getLastTimestamp();
+    }
+
+    /**
+     * 取得的IdWorker在生成前已被缩容释放时,重新选择IdWorker
+     */
+    @Override
+    public long getId() {
+        while (true) {
+            SnowflakePool.PaddedIdWorker worker = current();
+            try {
+                return worker.getId();
+            } catch (IllegalStateException e) {
+                if (closed || !worker.isClosed()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取正在使用的节点ID
+     *
+     * @return 节点ID
+     */
+    public long[] getWorkerIds() {
+        SnowflakePool.PaddedIdWorker[] workers = this.workers;
+        long[] workerIds = new long[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            workerIds[i] = workers[i].getWorkerId();
+        }
+        return workerIds;
+    }
+
+    /**
+     * 获取所有IdWorker(包括已释放的)已生成ID的数量
+     *
+     * @return 已生成ID的数量
+     */
+    public synchronized long getGeneratedCount() {
+        return generatedCount();
+    }
+
+    /**
+     * 设置所有IdWorker(包括之后扩容的)的生成记录
+     *
+     * @param journal 生成记录,null表示不再记录
+     */
+    public synchronized void setJournal(GenerationJournal journal) {
+        this.journal = journal;
+        for (SnowflakePool.PaddedIdWorker each : workers) {
+            each.setJournal(journal);
+        }
+    }
+
+    /**
+     * 统计上一周期的负载并扩容或缩容,由定时任务调用,每次最多增加或移除一个节点ID
+     */
+    public synchronized void rebalance() {
+        if (closed) {
+            return;
+        }
+        //释放上一周期移除的IdWorker
+        for (SnowflakePool.PaddedIdWorker each : retired) {
+            each.close();
+            releasedExhaustedCount += each.getExhaustedCount();
+            releasedGeneratedCount += each.getGeneratedCount();
+        }
+        retired.clear();
+
+        long now = System.currentTimeMillis();
+        long elapsed = Math.max(now - lastSampleTime, 1L);
+        long exhaustedCount = exhaustedCount();
+        long generatedCount = generatedCount();
+        long exhaustedPerSecond = (exhaustedCount - lastExhaustedCount) * 1000L / elapsed;
+        long idsPerSecond = (generatedCount - lastGeneratedCount) * 1000L / elapsed;
+        lastSampleTime = now;
+        lastExhaustedCount = exhaustedCount;
+        lastGeneratedCount = generatedCount;
+
+        SnowflakePool.PaddedIdWorker[] current = this.workers;
+        if (exhaustedPerSecond >= scaleUpExhaustedPerSecond) {
+            calmIntervals = 0;
+            if (current.length < maxWorkers && lastScaleUpEffective(exhaustedPerSecond, idsPerSecond)) {
+                SnowflakePool.PaddedIdWorker[] expanded = Arrays.copyOf(current, current.length + 1);
+                expanded[current.length] = new SnowflakePool.PaddedIdWorker(allocator, epoch, refreshTimeAfterNTP);
+                if (null != journal) {
+                    expanded[current.length].setJournal(journal);
+                }
+                this.workers = expanded;
+                scaledUpExhaustedPerSecond = exhaustedPerSecond;
+                scaledUpIdsPerSecond = idsPerSecond;
+                scaledUpWorkers = current.length;
+            }
+            return;
+        }
+        scaledUpExhaustedPerSecond = -1L;
+        if (current.length > 1 && idsPerSecond < (current.length - 1) * scaleDownIdsPerWorker) {
+            if (++calmIntervals >= coolDownIntervals) {
+                calmIntervals = 0;
+                retired.add(current[current.length - 1]);
+                this.workers = Arrays.copyOf(current, current.length - 1);
+            }
+        } else {
+            calmIntervals = 0;
+        }
+    }
+
+    /**
+     * 停止伸缩并释放所有的节点ID
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdownNow();
+        for (SnowflakePool.PaddedIdWorker each : retired) {
+            each.close();
+        }
+        retired.clear();
+        for (SnowflakePool.PaddedIdWorker each : workers) {
+            each.close();
+        }
+    }
+
+    /**
+     * 上一次扩容是否有效: sequence用尽的频率降低,或吞吐量至少增加了一个节点ID理论增量的一半
+     * 每个节点ID都达到上限时,扩容后用尽的次数会随节点ID数量增加,因此吞吐量增加也视为有效
+     */
+    private boolean lastScaleUpEffective(long exhaustedPerSecond, long idsPerSecond) {
+        if (scaledUpExhaustedPerSecond < 0) {
+            return true;
+        }
+        return exhaustedPerSecond < scaledUpExhaustedPerSecond
+                || idsPerSecond - scaledUpIdsPerSecond >= scaledUpIdsPerSecond / (2L * scaledUpWorkers);
+    }
+
+    private long exhaustedCount() {
+        long count = releasedExhaustedCount;
+        for (SnowflakePool.PaddedIdWorker each : workers) {
+            count += each.getExhaustedCount();
+        }
+        for (SnowflakePool.PaddedIdWorker each : retired) {
+            count += each.getExhaustedCount();
+        }
+        return count;
+    }
+
+    private long generatedCount() {
+        long count = releasedGeneratedCount;
+        for (SnowflakePool.PaddedIdWorker each : workers) {
+            count += each.getGeneratedCount();
+        }
+        for (SnowflakePool.PaddedIdWorker each : retired) {
+            count += each.getGeneratedCount();
+        }
+        return count;
+    }
+
+    private SnowflakePool.PaddedIdWorker current() {
+        SnowflakePool.PaddedIdWorker[] workers = this.workers;
+        return workers[ThreadHints.probe() % workers.length];
+    }
+
+}
@@ -0,0 +1,293 @@
+package com.github.xydonne.snowflake;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于本机文件锁的节点ID分配,适用于无Zookeeper的单机部署与CI环境
+ * 共享目录下每个节点ID对应一个worker-{workerId}.lock文件,持有文件锁即持有该节点ID,进程退出时文件锁由操作系统释放
+ * 文件中记录节点ID的释放时间(与Zookeeper的隔离账本相同),隔离时间内不会被重新分配
+ *
+ * @author Donney
+ **/
+public class FileLockWorkerIdAllocator implements WorkerIdAllocator {
+
+    //节点ID文件前缀
+    private static final String SLOT_FILE_PREFIX = "worker-";
+
+    //节点ID文件后缀
+    private static final String SLOT_FILE_SUFFIX = ".lock";
+
+    //节点ID从未被使用的标记
+    private static final long SLOT_UNUSED = 0L;
+
+    //节点ID正在被使用的标记
+    private static final long SLOT_HELD = -1L;
+
+    //加锁结果: 分配成功
+    private static final int ACQUIRED = 0;
+
+    //加锁结果: 节点ID已被持有或仍在隔离中
+    private static final int BUSY = 1;
+
+    //加锁结果: 节点ID的持有者已异常退出,已回收进入隔离
+    private static final int RECLAIMED = 2;
+
+    //默认的隔离时间(单位:毫秒)
+    private static final long DEFAULT_QUARANTINE_MARGIN_MS = 10 * 1000;
+
+    //本进程持有的节点ID文件,关闭同一文件的任意通道都会释放本进程在该文件上的锁,因此不能再打开这些文件
+    private static final Set<String> HELD_FILES = new HashSet<>();
+
+    //共享目录
+    private final File directory;
+
+    //节点ID数量
+    private final int workerCount;
+
+    //已释放节点ID的隔离时间
+    private final long quarantineMarginMs;
+
+    //已分配的节点ID与其文件锁
+    private final Map<Long, FileLock> locks = new HashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param directory 共享目录
+     */
+    public FileLockWorkerIdAllocator(File directory) {
+        this(directory, (int) IdWorker.MAX_WORKER_ID + 1, DEFAULT_QUARANTINE_MARGIN_MS);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param directory          共享目录
+     * @param workerCount        节点ID数量(1-1024),节点ID为0到workerCount-1
+     * @param quarantineMarginMs 已释放节点ID的隔离时间(单位:毫秒)
+     */
+    public FileLockWorkerIdAllocator(File directory, int workerCount, long quarantineMarginMs) {
+        if (workerCount > IdWorker.MAX_WORKER_ID + 1 || workerCount < 1) {
+            throw new IllegalArgumentException(String.format("workerCount can't be greater than %d or less than 1", IdWorker.MAX_WORKER_ID + 1));
+        }
+        if (quarantineMarginMs < 0) {
+            throw new IllegalArgumentException("quarantineMarginMs cannot be less than 0!");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Create directory " + directory + " failed!");
+        }
+        this.directory = directory;
+        this.workerCount = workerCount;
+        this.quarantineMarginMs = quarantineMarginMs;
+    }
+
+    /**
+     * 优先选择最早释放(或从未使用)的节点ID,加锁后再次检查释放时间
+     * 文件中标记为使用中但能加锁的节点ID(持有者异常退出),以当前时间记为释放时间,进入隔离
+     */
+    @Override
+    public synchronized long acquire(Listener listener) {
+        long now = System.currentTimeMillis();
+        long[] states = new long[workerCount];
+        long[] keys = new long[workerCount];
+        int size = 0;
+        for (int workerId = 0; workerId < workerCount; workerId++) {
+            states[workerId] = readState(workerId);
+            if (isFree(states[workerId], now)) {
+                //高位为释放时间,低位为节点ID,排序后即为优先级顺序
+                keys[size++] = states[workerId] << 10 | workerId;
+            }
+        }
+        Arrays.sort(keys, 0, size);
+        boolean reclaimed = false;
+        for (int i = 0; i < size; i++) {
+            long workerId = keys[i] & IdWorker.MAX_WORKER_ID;
+            int result = tryAcquire(workerId, now);
+            if (result == ACQUIRED) {
+                return workerId;
+            }
+            reclaimed |= result == RECLAIMED;
+        }
+
+        for (long workerId = 0; workerId < workerCount; workerId++) {
+            if (states[(int) workerId] == SLOT_HELD && !locks.containsKey(workerId)) {
+                int result = tryAcquire(workerId, now);
+                if (result == ACQUIRED) {
+                    return workerId;
+                }
+                reclaimed |= result == RECLAIMED;
+            }
+        }
+        if (reclaimed) {
+            throw new IllegalStateException("All free snowflake nodes are quarantined! Please retry after " + quarantineMarginMs + " milliseconds.");
+        }
+        throw new IllegalStateException("The snowflake node is full! The max node amount is " + workerCount + ".");
+    }
+
+    @Override
+    public synchronized void release(long workerId, long lastTimestamp) {
+        FileLock lock = locks.remove(workerId);
+        if (null == lock) {
+            return;
+        }
+        FileChannel channel = lock.channel();
+        try {
+            writeState(channel, Math.max(lastTimestamp, System.currentTimeMillis()));
+            lock.release();
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            closeQuietly(channel);
+            unregister(workerId);
+        }
+    }
+
+    @Override
+    public synchronized boolean isHeld(long workerId) {
+        FileLock lock = locks.get(workerId);
+        return null != lock && lock.isValid();
+    }
+
+    /**
+     * 关闭文件,不记录释放时间,之后分配时会作为异常退出的节点ID进入隔离
+     */
+    @Override
+    public synchronized void close() {
+        for (Map.Entry<Long, FileLock> each : locks.entrySet()) {
+            closeQuietly(each.getValue().channel());
+            unregister(each.getKey());
+        }
+        locks.clear();
+    }
+
+    /**
+     * 尝试对节点ID文件加锁,加锁后节点ID仍可用时标记为使用中并持有文件锁
+     *
+     * @return ACQUIRED, BUSY 或 RECLAIMED
+     */
+    private int tryAcquire(long workerId, long now) {
+        if (!register(workerId)) {
+            return BUSY;
+        }
+        FileChannel channel = null;
+        try {
+            channel = new RandomAccessFile(slotFile(workerId), "rw").getChannel();
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                //节点ID已被同一进程中的其他分配器持有
+                lock = null;
+            }
+            if (null == lock) {
+                closeQuietly(channel);
+                unregister(workerId);
+                return BUSY;
+            }
+            long state = readState(channel);
+            if (state == SLOT_HELD) {
+                writeState(channel, now);
+                closeQuietly(channel);
+                unregister(workerId);
+                return RECLAIMED;
+            }
+            if (!isFree(state, now)) {
+                closeQuietly(channel);
+                unregister(workerId);
+                return BUSY;
+            }
+            writeState(channel, SLOT_HELD);
+            locks.put(workerId, lock);
+            return ACQUIRED;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            unregister(workerId);
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private boolean isFree(long state, long now) {
+        return state == SLOT_UNUSED || (state > 0 && state + quarantineMarginMs < now);
+    }
+
+    private File slotFile(long workerId) {
+        return new File(directory, SLOT_FILE_PREFIX + workerId + SLOT_FILE_SUFFIX);
+    }
+
+    /**
+     * 不加锁读取节点ID文件中的状态,无法读取时视为使用中
+     */
+    private long readState(long workerId) {
+        File file = slotFile(workerId);
+        if (!file.exists()) {
+            return SLOT_UNUSED;
+        }
+        if (!register(workerId)) {
+            return SLOT_HELD;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            return readState(randomAccessFile.getChannel());
+        } catch (IOException e) {
+            return SLOT_HELD;
+        } finally {
+            unregister(workerId);
+        }
+    }
+
+    /**
+     * 在本进程内占用节点ID文件
+     *
+     * @return 文件未被本进程占用时返回true
+     */
+    private boolean register(long workerId) {
+        synchronized (HELD_FILES) {
+            return HELD_FILES.add(slotFile(workerId).getAbsolutePath());
+        }
+    }
+
+    private void unregister(long workerId) {
+        synchronized (HELD_FILES) {
+            HELD_FILES.remove(slotFile(workerId).getAbsolutePath());
+        }
+    }
+
+    private static long readState(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        return buffer.hasRemaining() ? SLOT_UNUSED : buffer.getLong(0);
+    }
+
+    private static void writeState(FileChannel channel, long state) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(0, state);
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(true);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (null == channel) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+}
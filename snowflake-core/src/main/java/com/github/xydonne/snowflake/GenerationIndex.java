@@ -0,0 +1,220 @@
+package com.github.xydonne.snowflake;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由生成记录重建的ID索引,可查询任意ID由哪个进程生成
+ * 按时间起始标记点与节点ID分组(不同时间起始标记点的ID数值可能相同),组内按每秒ID范围的第一个ID排序,查询时二分查找
+ * ID范围的时间起始标记点取自同一进程中该节点ID最近的WORKER_ID_CHANGED记录
+ *
+ * @author Donney
+ **/
+public class GenerationIndex {
+
+    private static final Comparator<Issuer> BY_FIRST_ID = new Comparator<Issuer>() {
+        @Override
+        public int compare(Issuer o1, Issuer o2) {
+            return Long.compare(o1.getFirstId(), o2.getFirstId());
+        }
+    };
+
+    //每个时间起始标记点下每个节点ID的ID范围
+    private final Map<Long, List<List<Issuer>>> issuers;
+
+    private GenerationIndex(Map<Long, List<List<Issuer>>> issuers) {
+        this.issuers = issuers;
+    }
+
+    /**
+     * 读取生成记录并重建索引
+     *
+     * @param journals 生成记录文件
+     * @return 索引
+     */
+    public static GenerationIndex build(File... journals) {
+        Map<Long, List<List<Issuer>>> issuers = new HashMap<>();
+        for (File journal : journals) {
+            long pid = -1L;
+            long startTimestamp = 0L;
+            //本进程中各节点ID的时间起始标记点
+            Map<Long, Long> epochs = new HashMap<>();
+            for (GenerationJournal.Record record : GenerationJournal.read(journal)) {
+                if (record.getType() == GenerationJournal.PROCESS_STARTED) {
+                    pid = record.getValue1();
+                    startTimestamp = record.getValue2();
+                    epochs.clear();
+                } else if (record.getType() == GenerationJournal.WORKER_ID_CHANGED) {
+                    epochs.put(record.getWorkerId(), record.getValue3());
+                } else if (record.getType() == GenerationJournal.ISSUED) {
+                    Long epoch = epochs.get(record.getWorkerId());
+                    Issuer issuer = new Issuer(journal, pid, startTimestamp, null == epoch ? 0L : epoch, record.getWorkerId(), record.getValue1(), record.getValue2(), record.getValue3());
+                    workerIssuers(issuers, issuer.getEpoch()).get((int) record.getWorkerId()).add(issuer);
+                }
+            }
+        }
+        for (List<List<Issuer>> workers : issuers.values()) {
+            for (List<Issuer> each : workers) {
+                Collections.sort(each, BY_FIRST_ID);
+            }
+        }
+        return new GenerationIndex(issuers);
+    }
+
+    private static List<List<Issuer>> workerIssuers(Map<Long, List<List<Issuer>>> issuers, long epoch) {
+        List<List<Issuer>> workers = issuers.get(epoch);
+        if (null == workers) {
+            workers = new ArrayList<>();
+            for (int i = 0; i <= IdWorker.MAX_WORKER_ID; i++) {
+                workers.add(new ArrayList<Issuer>());
+            }
+            issuers.put(epoch, workers);
+        }
+        return workers;
+    }
+
+    /**
+     * 查询ID由哪个进程生成,只能用于只有一个时间起始标记点的索引
+     *
+     * @param id Snowflake ID
+     * @return 生成该ID的进程与ID范围,没有记录时返回null
+     */
+    public Issuer lookup(long id) {
+        if (issuers.isEmpty()) {
+            return null;
+        }
+        if (issuers.size() > 1) {
+            throw new IllegalStateException("The index contains ids of " + issuers.size() + " epochs, please lookup with the epoch!");
+        }
+        return lookup(id, issuers.keySet().iterator().next());
+    }
+
+    /**
+     * 查询ID由哪个进程生成
+     *
+     * @param id    Snowflake ID
+     * @param epoch 生成该ID的时间起始标记点
+     * @return 生成该ID的进程与ID范围,没有记录时返回null
+     */
+    public Issuer lookup(long id, long epoch) {
+        List<List<Issuer>> workers = issuers.get(epoch);
+        if (null == workers) {
+            return null;
+        }
+        List<Issuer> candidates = workers.get((int) WorkerIdLayout.workerIdOf(id));
+        int low = 0;
+        int high = candidates.size() - 1;
+        //查找第一个ID不大于id的最后一个范围
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (candidates.get(mid).getFirstId() <= id) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return null;
+        }
+        Issuer issuer = candidates.get(high);
+        return id <= issuer.getLastId() ? issuer : null;
+    }
+
+    /**
+     * 获取索引中ID范围的数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        int size = 0;
+        for (List<List<Issuer>> workers : issuers.values()) {
+            for (List<Issuer> each : workers) {
+                size += each.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 生成某一秒ID范围的进程
+     */
+    public static final class Issuer {
+
+        //生成记录文件
+        private final File journal;
+
+        //进程号
+        private final long pid;
+
+        //进程打开生成记录的时间
+        private final long startTimestamp;
+
+        //时间起始标记点
+        private final long epoch;
+
+        private final long workerId;
+
+        private final long firstId;
+
+        private final long lastId;
+
+        //ID数量,-1表示进程在该秒结束前退出
+        private final long count;
+
+        Issuer(File journal, long pid, long startTimestamp, long epoch, long workerId, long firstId, long lastId, long count) {
+            this.journal = journal;
+            this.pid = pid;
+            this.startTimestamp = startTimestamp;
+            this.epoch = epoch;
+            this.workerId = workerId;
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.count = count;
+        }
+
+        public File getJournal() {
+            return journal;
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        public long getStartTimestamp() {
+            return startTimestamp;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public long getWorkerId() {
+            return workerId;
+        }
+
+        public long getFirstId() {
+            return firstId;
+        }
+
+        public long getLastId() {
+            return lastId;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Issuer{journal=" + journal + ", pid=" + pid + ", startTimestamp=" + startTimestamp + ", epoch=" + epoch + ", workerId=" + workerId
+                    + ", firstId=" + firstId + ", lastId=" + lastId + ", count=" + count + "}";
+        }
+
+    }
+
+}
@@ -0,0 +1,421 @@
+package com.github.xydonne.snowflake;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ID生成记录,以内存映射的方式追加写入文件,用于证明任意ID由哪个进程,哪个节点ID在哪个时间段生成
+ * 只记录粗粒度的事件,不会为每个ID产生I/O:
+ * PROCESS_STARTED     进程打开记录文件,value1为进程号,value2为打开时间
+ * WORKER_ID_CHANGED   节点ID变更,value1为原节点ID(-1表示无),value2为变更时间,value3为时间起始标记点
+ * ISSUED              每秒生成的ID范围,value1为第一个ID,value2为最后一个ID,value3为ID数量;
+ *                     该秒结束前value2为该秒可能的最大ID,value3为-1,进程异常退出时保守地覆盖整秒
+ * CLOCK_ROLLBACK      时间回溯,value1为最后时间,value2为回溯后的时间
+ * SEQUENCE_EXHAUSTED  每秒sequence用尽的次数,value1为该秒的开始时间,value2为次数
+ * 每条记录32字节: 类型(int) + 节点ID(int) + 3个long值,类型最后写入,未写完的记录会被视为文件结尾
+ * 同一文件可被同一进程中的多个IdWorker共用;打开时对文件加锁,已被其他进程或同一进程中的其他GenerationJournal打开时立即失败
+ * 映射区域在离开时以及每次写入一秒的实际范围后写入磁盘,操作系统崩溃时最多丢失约一秒的记录
+ *
+ * @author Donney
+ **/
+public class GenerationJournal implements Closeable {
+
+    public static final int PROCESS_STARTED = 1;
+
+    public static final int WORKER_ID_CHANGED = 2;
+
+    public static final int ISSUED = 3;
+
+    public static final int CLOCK_ROLLBACK = 4;
+
+    public static final int SEQUENCE_EXHAUSTED = 5;
+
+    //每条记录的字节数,文件头也占用一条记录
+    static final int RECORD_SIZE = 32;
+
+    //文件头标记: "SNOWFLAK"
+    private static final long MAGIC = 0x534E4F57464C414BL;
+
+    private static final long VERSION = 1L;
+
+    //默认每次映射1MB
+    private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    //本进程打开的记录文件,关闭同一文件的任意通道都会释放本进程在该文件上的锁,因此读取这些文件时使用已打开的通道
+    private static final Map<String, GenerationJournal> OPENED = new HashMap<>();
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    //文件锁,防止多个进程同时追加记录
+    private final FileLock lock;
+
+    private final int chunkSize;
+
+    //当前映射的区域
+    private MappedByteBuffer buffer;
+
+    //当前映射区域在文件中的开始位置
+    private long chunkStart;
+
+    //最近一次更新的不在当前映射区域内的区域,多个IdWorker共用记录文件时,其他IdWorker的ISSUED记录可能在此区域内
+    private MappedByteBuffer previous;
+
+    //previous在文件中的开始位置,-1表示无
+    private long previousStart = -1L;
+
+    //下一条记录的位置
+    private long position;
+
+    private boolean closed = false;
+
+    /**
+     * 构造方法
+     *
+     * @param file 记录文件,不存在时创建,已存在时追加
+     */
+    public GenerationJournal(File file) {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param file      记录文件,不存在时创建,已存在时追加
+     * @param chunkSize 每次映射的字节数,需为32的倍数
+     */
+    public GenerationJournal(File file, int chunkSize) {
+        if (chunkSize < RECORD_SIZE || chunkSize % RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("chunkSize must be a positive multiple of " + RECORD_SIZE + "!");
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        String path = path(file);
+        synchronized (OPENED) {
+            if (OPENED.containsKey(path)) {
+                throw new IllegalStateException(file + " is already opened by another generation journal!");
+            }
+            try {
+                this.channel = new RandomAccessFile(file, "rw").getChannel();
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            FileLock fileLock;
+            try {
+                fileLock = channel.tryLock();
+            } catch (OverlappingFileLockException | IOException e) {
+                fileLock = null;
+            }
+            if (null == fileLock) {
+                closeQuietly(channel);
+                throw new IllegalStateException(file + " is locked by another process!");
+            }
+            this.lock = fileLock;
+            OPENED.put(path, this);
+        }
+        try {
+            if (channel.size() == 0) {
+                map(0L);
+                buffer.putLong(8, VERSION);
+                buffer.putLong(0, MAGIC);
+                this.position = RECORD_SIZE;
+            } else {
+                this.position = RECORD_SIZE * (long) readRecords(channel, file, null);
+                map(position);
+            }
+        } catch (IOException e) {
+            release();
+            throw new IllegalStateException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        append(PROCESS_STARTED, -1L, pid(), System.currentTimeMillis(), 0L);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 追加一条记录,记录文件关闭后忽略
+     *
+     * @return 记录的位置,记录文件关闭后返回-1
+     */
+    synchronized long append(int type, long workerId, long value1, long value2, long value3) {
+        if (closed) {
+            return -1L;
+        }
+        if (position >= chunkStart + chunkSize) {
+            map(position);
+        }
+        int offset = (int) (position - chunkStart);
+        buffer.putInt(offset + 4, (int) workerId);
+        buffer.putLong(offset + 8, value1);
+        buffer.putLong(offset + 16, value2);
+        buffer.putLong(offset + 24, value3);
+        buffer.putInt(offset, type);
+        long appended = position;
+        position += RECORD_SIZE;
+        return appended;
+    }
+
+    /**
+     * 更新已追加记录的value2与value3,用于在一秒结束时写入ISSUED记录的实际范围
+     * 记录不在当前映射区域内时(其他IdWorker已追加了一个区域以上的记录),使用previous,不在previous内时才重新映射记录所在的整个区域
+     */
+    synchronized void update(long recordPosition, long value2, long value3) {
+        if (closed || recordPosition < 0) {
+            return;
+        }
+        ByteBuffer target;
+        int offset;
+        if (recordPosition >= chunkStart && recordPosition < chunkStart + chunkSize) {
+            target = buffer;
+            offset = (int) (recordPosition - chunkStart);
+        } else {
+            if (previousStart < 0 || recordPosition < previousStart || recordPosition >= previousStart + chunkSize) {
+                retire(mapChunk(recordPosition - recordPosition % chunkSize), recordPosition - recordPosition % chunkSize);
+            }
+            target = previous;
+            offset = (int) (recordPosition - previousStart);
+        }
+        target.putLong(offset + 16, value2);
+        target.putLong(offset + 24, value3);
+    }
+
+    /**
+     * 把已追加与已更新的记录写入磁盘
+     */
+    public synchronized void force() {
+        if (!closed) {
+            buffer.force();
+            if (null != previous) {
+                previous.force();
+            }
+        }
+    }
+
+    /**
+     * 写入磁盘并关闭文件,之后使用此记录文件的IdWorker不再记录
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        force();
+        closed = true;
+        release();
+    }
+
+    /**
+     * 读取记录文件中的所有记录
+     *
+     * @param file 记录文件
+     * @return 按写入顺序排列的记录
+     */
+    public static List<Record> read(File file) {
+        List<Record> records = new ArrayList<>();
+        GenerationJournal opened;
+        synchronized (OPENED) {
+            opened = OPENED.get(path(file));
+        }
+        if (null != opened) {
+            synchronized (opened) {
+                if (!opened.closed) {
+                    try {
+                        readRecords(opened.channel, file, records);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    return records;
+                }
+            }
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            readRecords(randomAccessFile.getChannel(), file, records);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * 释放文件锁并关闭文件
+     */
+    private void release() {
+        synchronized (OPENED) {
+            OPENED.remove(path(file));
+        }
+        try {
+            lock.release();
+        } catch (IOException ignored) {
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    private static String path(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 映射记录所在的区域作为当前区域,原区域写入磁盘后作为previous
+     */
+    private void map(long recordPosition) {
+        long start = recordPosition - recordPosition % chunkSize;
+        MappedByteBuffer mapped = mapChunk(start);
+        if (null != buffer) {
+            retire(buffer, chunkStart);
+        }
+        buffer = mapped;
+        chunkStart = start;
+    }
+
+    /**
+     * 替换previous,原previous在替换前写入磁盘
+     */
+    private void retire(MappedByteBuffer chunk, long start) {
+        if (null != previous) {
+            previous.force();
+        }
+        chunk.force();
+        previous = chunk;
+        previousStart = start;
+    }
+
+    private MappedByteBuffer mapChunk(long start) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, start, chunkSize);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 校验文件头并顺序读取记录,直至文件结尾或类型为0的记录
+     *
+     * @return 包括文件头在内的记录数量
+     */
+    private static int readRecords(FileChannel channel, File file, List<Record> records) throws IOException {
+        ByteBuffer read = ByteBuffer.allocate(RECORD_SIZE * 2048);
+        channel.position(0);
+        int count = 0;
+        while (channel.read(read) >= 0 || read.position() > 0) {
+            read.flip();
+            if (read.remaining() < RECORD_SIZE) {
+                break;
+            }
+            while (read.remaining() >= RECORD_SIZE) {
+                int offset = read.position();
+                if (count == 0) {
+                    if (read.getLong(offset) != MAGIC) {
+                        throw new IllegalStateException(file + " is not a snowflake generation journal!");
+                    }
+                } else {
+                    int type = read.getInt(offset);
+                    if (type == 0) {
+                        return count;
+                    }
+                    if (null != records) {
+                        records.add(new Record(type, read.getInt(offset + 4), read.getLong(offset + 8), read.getLong(offset + 16), read.getLong(offset + 24)));
+                    }
+                }
+                read.position(offset + RECORD_SIZE);
+                count++;
+            }
+            read.compact();
+        }
+        if (count == 0) {
+            throw new IllegalStateException(file + " is not a snowflake generation journal!");
+        }
+        return count;
+    }
+
+    private static long pid() {
+        //格式为pid@hostname
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int index = name.indexOf('@');
+        try {
+            return Long.parseLong(index > 0 ? name.substring(0, index) : name);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * 一条生成记录,各类型的值见GenerationJournal
+     */
+    public static final class Record {
+
+        private final int type;
+
+        private final long workerId;
+
+        private final long value1;
+
+        private final long value2;
+
+        private final long value3;
+
+        Record(int type, long workerId, long value1, long value2, long value3) {
+            this.type = type;
+            this.workerId = workerId;
+            this.value1 = value1;
+            this.value2 = value2;
+            this.value3 = value3;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public long getWorkerId() {
+            return workerId;
+        }
+
+        public long getValue1() {
+            return value1;
+        }
+
+        public long getValue2() {
+            return value2;
+        }
+
+        public long getValue3() {
+            return value3;
+        }
+
+        @Override
+        public String toString() {
+            return "Record{type=" + type + ", workerId=" + workerId + ", value1=" + value1 + ", value2=" + value2 + ", value3=" + value3 + "}";
+        }
+
+    }
+
+}
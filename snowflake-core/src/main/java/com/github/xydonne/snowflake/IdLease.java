@@ -0,0 +1,122 @@
+package com.github.xydonne.snowflake;
+
+import java.io.Serializable;
+
+/**
+ * 节点ID在一段时间窗口内的租约,适用于离线/批量任务
+ * 租约期间及之后的隔离时间内,不会有其他生成器使用该节点ID,因此窗口内的ID可以按序号直接计算,无需任何协调
+ * 第index个ID的时间为startTimestamp + index / 4096,sequence为index % 4096,窗口内共(endTimestamp - startTimestamp) * 4096个ID
+ *
+ * @author Donney
+ **/
+public class IdLease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 每毫秒的ID数量: 4096
+    private static final long IDS_PER_MILLIS = IdWorker.MAX_SEQUENCE + 1;
+
+    // 节点ID
+    private final long workerId;
+    // 时间起始标记点
+    private final long epoch;
+    // 窗口开始时间(包含)
+    private final long startTimestamp;
+    // 窗口结束时间(不包含)
+    private final long endTimestamp;
+
+    /**
+     * 构造方法
+     *
+     * @param workerId       节点ID
+     * @param epoch          时间起始标记点
+     * @param startTimestamp 窗口开始时间(包含)
+     * @param endTimestamp   窗口结束时间(不包含)
+     */
+    public IdLease(long workerId, long epoch, long startTimestamp, long endTimestamp) {
+        if (workerId > IdWorker.MAX_WORKER_ID || workerId < 0) {
+            throw new IllegalArgumentException(String.format("workerId can't be greater than %d or less than 0", IdWorker.MAX_WORKER_ID));
+        }
+        if (startTimestamp < epoch || endTimestamp <= startTimestamp) {
+            throw new IllegalArgumentException("The lease window [" + startTimestamp + ", " + endTimestamp + ") is invalid!");
+        }
+        this.workerId = workerId;
+        this.epoch = epoch;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getEndTimestamp() {
+        return endTimestamp;
+    }
+
+    /**
+     * 获取窗口内ID的数量
+     *
+     * @return ID数量
+     */
+    public long capacity() {
+        return (endTimestamp - startTimestamp) * IDS_PER_MILLIS;
+    }
+
+    /**
+     * 计算窗口内第index个ID,index越大ID越大
+     *
+     * @param index 序号(0到capacity() - 1)
+     * @return Snowflake ID
+     */
+    public long getId(long index) {
+        if (index < 0 || index >= capacity()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", capacity: " + capacity());
+        }
+        long timestamp = startTimestamp + index / IDS_PER_MILLIS;
+        return timestamp - epoch << IdWorker.TIMESTAMP_SHIFT | workerId << IdWorker.WORKER_ID_SHIFT | index % IDS_PER_MILLIS;
+    }
+
+    /**
+     * 把窗口按毫秒平均分成count份,返回第index份,适用于按分区并行计算ID
+     *
+     * @param index 分区序号(0到count - 1)
+     * @param count 分区数量,不能大于窗口的毫秒数
+     * @return 分区的租约
+     */
+    public IdLease partition(int index, int count) {
+        long millis = endTimestamp - startTimestamp;
+        if (count < 1 || count > millis) {
+            throw new IllegalArgumentException("count can't be greater than " + millis + " or less than 1");
+        }
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index: " + index + ", count: " + count);
+        }
+        return new IdLease(workerId, epoch, startTimestamp + millis * index / count, startTimestamp + millis * (index + 1) / count);
+    }
+
+    /**
+     * ID是否由此租约生成
+     *
+     * @param id Snowflake ID
+     * @return 是否在租约内
+     */
+    public boolean contains(long id) {
+        long timestamp = WorkerIdLayout.timestampOf(id, epoch);
+        return WorkerIdLayout.workerIdOf(id) == workerId && timestamp >= startTimestamp && timestamp < endTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "IdLease{workerId=" + workerId + ", epoch=" + epoch + ", startTimestamp=" + startTimestamp + ", endTimestamp=" + endTimestamp + "}";
+    }
+
+}
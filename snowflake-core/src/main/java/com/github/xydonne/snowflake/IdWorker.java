@@ -0,0 +1,293 @@
+package com.github.xydonne.snowflake;
+
+/**
+ * Twitter的Snowflake ID算法Java实现
+ * id构成: 第一位0 + 41位的时间前缀 + 10位的节点标识 + 12位的sequence避免并发的数字(12位不够用时强制得到新的时间前缀)
+ * 对系统时间的依赖性非常强，当检测到ntp时间调整后，将一直获取新的时间,直至超过最后获取到的时间
+ *
+ * @author Donney
+ */
+
+public class IdWorker implements Snowflake {
+
+    // 时间起始标记点，作为基准，一般取系统的最近时间(例如 EPOCH = 946656000000L 为2000年01月01日 00:00开始计时)
+    private final long epoch;
+    // 应用标识位数
+    static final int WORKER_ID_BITS = 10;
+    // 毫秒内自增位
+    private static final int SEQUENCE_BITS = 12;
+    // workerId左移位数: 12
+    static final int WORKER_ID_SHIFT = SEQUENCE_BITS;
+    // timestamp左移位数: 22
+    static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+    // 应用ID最大值: 1023
+    static final long MAX_WORKER_ID = ~(-1 << WORKER_ID_BITS);
+    // 自增序列最大值: 4095
+    static final long MAX_SEQUENCE = ~(-1L << SEQUENCE_BITS);
+    // 当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+    private final long refreshTimeAfterNTP;
+    // 并发控制
+    private long sequence = 0L;
+    // 最后更新时间
+    private long lastTimestamp = 0L;
+    // 应用标识ID
+    private long workerId;
+    // 已生成ID数量,只在生成ID时(持有锁)写入,读取时无需获取锁
+    private volatile long generatedCount = 0L;
+    // sequence用尽的次数,只在生成ID时(持有锁)写入,读取时无需获取锁
+    private volatile long exhaustedCount = 0L;
+    // 生成记录(可选)
+    private GenerationJournal journal;
+    // 当前秒的ISSUED记录位置,-1表示没有
+    private long rangePosition = -1L;
+    // 当前秒
+    private long rangeSecond;
+    // 当前秒的最后一个ID
+    private long rangeLastId;
+    // 当前秒的ID数量
+    private long rangeCount;
+    // 当前秒sequence用尽的次数
+    private long rangeExhausted;
+
+    @Override
+    public long getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    @Override
+    public synchronized void setWorkerID(long workerID) {
+        if (null != this.journal && workerID != this.workerId) {
+            flushRange();
+            this.journal.append(GenerationJournal.WORKER_ID_CHANGED, workerID, this.workerId, timeGen(), this.epoch);
+        }
+        this.workerId = workerID;
+    }
+
+    @Override
+    public long getLastTimestamp() {
+        return this.lastTimestamp;
+    }
+
+    @Override
+    public long getId() {
+        return this.nextId();
+    }
+
+    /**
+     * 批量生成Snowflake ID,只获取一次锁
+     *
+     * @param ids    存放ID的数组
+     * @param offset 起始位置
+     * @param length 生成数量
+     */
+    public synchronized void getIds(long[] ids, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > ids.length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + ids.length);
+        }
+        for (int i = 0; i < length; i++) {
+            ids[offset + i] = this.nextId();
+        }
+    }
+
+    /**
+     * 获取已生成ID的数量,可用于统计吞吐量
+     *
+     * @return 已生成ID的数量
+     */
+    public long getGeneratedCount() {
+        return this.generatedCount;
+    }
+
+    /**
+     * 获取sequence用尽(需等待下一毫秒)的次数,可用于判断单个节点ID是否已达到吞吐量上限
+     *
+     * @return sequence用尽的次数
+     */
+    public long getExhaustedCount() {
+        return this.exhaustedCount;
+    }
+
+    /**
+     * 设置生成记录,记录节点ID变更,每秒生成的ID范围,时间回溯与sequence用尽,不会为每个ID产生I/O
+     *
+     * @param journal 生成记录,null表示不再记录
+     */
+    public synchronized void setJournal(GenerationJournal journal) {
+        flushRange();
+        this.journal = journal;
+        if (null != journal) {
+            journal.append(GenerationJournal.WORKER_ID_CHANGED, this.workerId, -1L, timeGen(), this.epoch);
+        }
+    }
+
+    /**
+     * 写入当前秒的实际ID范围,空闲时可调用,以免记录中保守地覆盖整秒
+     */
+    public synchronized void flushJournal() {
+        flushRange();
+    }
+
+    /**
+     * 构造方法
+     */
+    public IdWorker() {
+        this(0L, 0L, 1L);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param workerId 应用标识
+     */
+    public IdWorker(long workerId) {
+        this(workerId, 0L, 1L);
+    }
+
+
+    /**
+     * 构造方法
+     *
+     * @param workerId 应用标识
+     * @param epoch    时间起始标记点
+     */
+    public IdWorker(long workerId, long epoch) {
+        this(workerId, epoch, 1L);
+    }
+
+
+    /**
+     * 构造方法
+     *
+     * @param workerId    应用标识
+     * @param epoch       时间起始标记点
+     * @param refreshTimeAfterNTP 当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+     */
+    public IdWorker(long workerId, long epoch, long refreshTimeAfterNTP) {
+        if (workerId > MAX_WORKER_ID || workerId < 0) {
+            throw new IllegalArgumentException(String.format("workerId can't be greater than %d or less than 0", MAX_WORKER_ID));
+        }
+        this.workerId = workerId;
+        this.epoch = epoch;
+        this.refreshTimeAfterNTP = refreshTimeAfterNTP;
+    }
+
+
+    /**
+     * 获取Snowflake ID
+     *
+     * @return Snowflake ID
+     */
+    private synchronized long nextId() {
+        long timestamp = timeGen();
+        // 如果上一个timestamp与新产生的相等，则sequence加一(0-4095循环); 对新的timestamp，sequence从0开始
+        if (timestamp == this.lastTimestamp) {
+            this.sequence = this.sequence + 1L & MAX_SEQUENCE;
+            if (this.sequence == 0L) {
+                this.exhaustedCount = this.exhaustedCount + 1L;
+                if (null != this.journal) {
+                    this.rangeExhausted++;
+                }
+                timestamp = this.tilNextMillis(this.lastTimestamp);
+            }
+        } else {
+            if (timestamp < this.lastTimestamp) {
+                clockRolledBack(timestamp);
+                timestamp = afterNTP(this.lastTimestamp);
+            }
+            this.sequence = 0L;
+        }
+        this.lastTimestamp = timestamp;
+        this.generatedCount = this.generatedCount + 1L;
+        // 返回Snowflake ID: 第一位0 + 41位的时间前缀 + 10位的节点标识 + 12位的sequence避免并发的数字(12位不够用时强制得到新的时间前缀)
+        long id = timestamp - epoch << TIMESTAMP_SHIFT | this.workerId << WORKER_ID_SHIFT | this.sequence;
+        if (null != this.journal) {
+            issued(timestamp, id);
+        }
+        return id;
+    }
+
+    /**
+     * 每秒第一个ID时追加ISSUED记录,范围先记为该秒可能的最大ID,该秒结束时再写入实际范围
+     */
+    private void issued(long timestamp, long id) {
+        long second = timestamp / 1000L;
+        if (this.rangePosition < 0 || second != this.rangeSecond) {
+            flushRange();
+            long secondEndId = (second + 1L) * 1000L - 1L - epoch << TIMESTAMP_SHIFT | this.workerId << WORKER_ID_SHIFT | MAX_SEQUENCE;
+            this.rangePosition = this.journal.append(GenerationJournal.ISSUED, this.workerId, id, secondEndId, -1L);
+            this.rangeSecond = second;
+        }
+        this.rangeLastId = id;
+        this.rangeCount++;
+    }
+
+    /**
+     * 写入上一秒的实际范围,并把记录写入磁盘;每个IdWorker每秒最多一次,不会为每个ID产生I/O
+     */
+    private void flushRange() {
+        if (null != this.journal && this.rangePosition >= 0) {
+            this.journal.update(this.rangePosition, this.rangeLastId, this.rangeCount);
+            if (this.rangeExhausted > 0) {
+                this.journal.append(GenerationJournal.SEQUENCE_EXHAUSTED, this.workerId, this.rangeSecond * 1000L, this.rangeExhausted, 0L);
+            }
+            this.journal.force();
+        }
+        this.rangePosition = -1L;
+        this.rangeCount = 0L;
+        this.rangeExhausted = 0L;
+    }
+
+    private void clockRolledBack(long timestamp) {
+        if (null != this.journal) {
+            this.journal.append(GenerationJournal.CLOCK_ROLLBACK, this.workerId, this.lastTimestamp, timestamp, 0L);
+        }
+    }
+
+    private static long timeGen() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 当sequence为0时,等待到下一秒再生成ID
+     *
+     * @return timestamp
+     */
+    private long tilNextMillis(long lastTimestamp) {
+        long timestamp = timeGen();
+        while (timestamp == lastTimestamp) {
+            ThreadHints.onSpinWait();
+            timestamp = timeGen();
+        }
+        if (timestamp < lastTimestamp) {
+            clockRolledBack(timestamp);
+            timestamp = afterNTP(this.lastTimestamp);
+        }
+        return timestamp;
+    }
+
+    /**
+     * 当NTP时间调整后,导致时间回溯时,将一直获取新的时间,直至超过最后获取到的时间
+     *
+     * @return timestamp
+     */
+    private long afterNTP(long lastTimestamp) {
+        // 当检测到ntp时间调整后，将一直获取新的时间,直至超过最后获取到的时间
+        long timestamp = timeGen();
+        while (timestamp <= lastTimestamp) {
+            // 默认每1毫秒检测一次时间,防止CPU满载
+            try {
+                Thread.sleep(refreshTimeAfterNTP);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            timestamp = timeGen();
+        }
+        return timestamp;
+    }
+
+}
\ No newline at end of file
@@ -11,7 +11,13 @@ public interface Snowflake {
     //获取应用标识ID
     long getWorkerId();
 
-    //设置应用标识ID
+    /**
+     * 设置应用标识ID
+     * 节点ID由分配器或租约管理的实现(SnowflakePool、ElasticSnowflake、DegradableSnowflake)不支持直接设置
+     *
+     * @param workerID 应用标识ID
+     * @throws UnsupportedOperationException 实现不支持直接设置节点ID时
+     */
     void setWorkerID(long workerID);
 
     //获取最后更新时间
@@ -0,0 +1,152 @@
+package com.github.xydonne.snowflake;
+
+/**
+ * 多节点ID的Snowflake池,适用于多核(多CPU插槽)的大型JVM
+ * 从WorkerIdAllocator分配一组节点ID,每个节点ID对应一个独立加锁,按缓存行填充的IdWorker,
+ * 每个线程固定使用其中一个IdWorker,避免所有线程争用同一把锁与同一缓存行,吞吐量随核数增加
+ * 不同IdWorker的节点ID不同,因此生成的ID不会重复
+ *
+ * @author Donney
+ **/
+public class SnowflakePool implements Snowflake {
+
+    private final PaddedIdWorker[] workers;
+
+    private final long epoch;
+
+    /**
+     * 构造方法
+     *
+     * @param allocator 节点ID分配器
+     * @param size      节点ID数量,建议不超过CPU核数
+     */
+    public SnowflakePool(WorkerIdAllocator allocator, int size) {
+        this(allocator, size, 0L, 1L);
+    }
+
+    /**
+     * 构造方法,分配失败时释放已分配的节点ID
+     *
+     * @param allocator           节点ID分配器
+     * @param size                节点ID数量,建议不超过CPU核数
+     * @param epoch               时间起始标记点
+     * @param refreshTimeAfterNTP 当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+     */
+    public SnowflakePool(WorkerIdAllocator allocator, int size, long epoch, long refreshTimeAfterNTP) {
+        if (size < 1 || size > IdWorker.MAX_WORKER_ID + 1) {
+            throw new IllegalArgumentException(String.format("size can't be greater than %d or less than 1", IdWorker.MAX_WORKER_ID + 1));
+        }
+        this.epoch = epoch;
+        this.workers = new PaddedIdWorker[size];
+        try {
+            for (int i = 0; i < size; i++) {
+                workers[i] = new PaddedIdWorker(allocator, epoch, refreshTimeAfterNTP);
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 获取当前线程使用的IdWorker的节点ID
+     */
+    @Override
+    public long getWorkerId() {
+        return current().getWorkerId();
+    }
+
+    /**
+     * 池中的节点ID由分配器管理,不能直接设置
+     */
+    @Override
+    public void setWorkerID(long workerID) {
+        throw new UnsupportedOperationException("The worker ids of a snowflake pool are managed by its allocator!");
+    }
+
+    /**
+     * 获取当前线程使用的IdWorker的最后更新时间
+     */
+    @Override
+    public long getLastTimestamp() {
+        return current().getLastTimestamp();
+    }
+
+    @Override
+    public long getId() {
+        return current().getId();
+    }
+
+    /**
+     * 获取池中所有的节点ID
+     *
+     * @return 节点ID
+     */
+    public long[] getWorkerIds() {
+        long[] workerIds = new long[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            workerIds[i] = workers[i].getWorkerId();
+        }
+        return workerIds;
+    }
+
+    /**
+     * 获取池中所有IdWorker已生成ID的数量
+     *
+     * @return 已生成ID的数量
+     */
+    public long getGeneratedCount() {
+        long generatedCount = 0L;
+        for (PaddedIdWorker each : workers) {
+            generatedCount += each.getGeneratedCount();
+        }
+        return generatedCount;
+    }
+
+    /**
+     * 设置池中所有IdWorker的生成记录
+     *
+     * @param journal 生成记录,null表示不再记录
+     */
+    public void setJournal(GenerationJournal journal) {
+        for (PaddedIdWorker each : workers) {
+            each.setJournal(journal);
+        }
+    }
+
+    /**
+     * 释放池中所有的节点ID
+     */
+    public void close() {
+        for (PaddedIdWorker each : workers) {
+            if (null != each) {
+                each.close();
+            }
+        }
+    }
+
+    private PaddedIdWorker current() {
+        return workers[ThreadHints.probe() % workers.length];
+    }
+
+    /**
+     * 在IdWorker的字段之后填充128字节(相邻两个缓存行),连续分配的IdWorker之间的锁与状态不会落在同一缓存行
+     */
+    @SuppressWarnings("unused")
+    static final class PaddedIdWorker extends CoordinatedIdWorker {
+
+        private long p0, p1, p2, p3, p4, p5, p6, p7;
+        private long p8, p9, p10, p11, p12, p13, p14, p15;
+
+        PaddedIdWorker(WorkerIdAllocator allocator, long epoch, long refreshTimeAfterNTP) {
+            super(allocator, epoch, refreshTimeAfterNTP);
+        }
+
+    }
+
+}
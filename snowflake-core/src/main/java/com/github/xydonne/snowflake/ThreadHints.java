@@ -0,0 +1,39 @@
+package com.github.xydonne.snowflake;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热点路径上与JDK版本相关的操作,Java 8的实现
+ * Multi-Release jar中META-INF/versions/9与META-INF/versions/21下有同名类,运行时按JDK版本选择
+ *
+ * @author Donney
+ **/
+final class ThreadHints {
+
+    //为每个线程分配的探针值,按线程创建顺序递增,使线程均匀分布到各IdWorker
+    private static final AtomicInteger PROBE_GENERATOR = new AtomicInteger();
+
+    private static final ThreadLocal<Integer> PROBE = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return PROBE_GENERATOR.getAndIncrement() & Integer.MAX_VALUE;
+        }
+    };
+
+    private ThreadHints() {
+    }
+
+    /**
+     * 忙等待时调用,Java 8没有对应的指令,空方法会被JIT消除
+     */
+    static void onSpinWait() {
+    }
+
+    /**
+     * 获取当前线程的探针值(非负数)
+     */
+    static int probe() {
+        return PROBE.get();
+    }
+
+}
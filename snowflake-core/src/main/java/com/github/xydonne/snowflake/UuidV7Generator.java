@@ -0,0 +1,138 @@
+package com.github.xydonne.snowflake;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于Snowflake的时间有序128位ID,符合RFC 9562 UUIDv7格式
+ * 高64位: 48位Unix毫秒时间 + 4位版本号(7) + 12位sequence(rand_a作为毫秒内计数器,同一节点内单调递增)
+ * 低64位: 2位变体(10) + 10位节点标识 + 52位随机数
+ * 时间,节点标识与sequence均来自Snowflake ID,因此不同节点生成的UUID不会重复;结果以两个long或写入ByteBuffer返回,不创建UUID对象
+ *
+ * @author Donney
+ **/
+public class UuidV7Generator {
+
+    // 版本号: 7
+    private static final long VERSION = 0x7000L;
+    // 变体: 10
+    private static final long VARIANT = 0x8000000000000000L;
+    // 随机数位数
+    private static final int RANDOM_BITS = 52;
+    // 随机数最大值
+    private static final long MAX_RANDOM = ~(-1L << RANDOM_BITS);
+    // Unix毫秒时间左移位数: 16
+    private static final int TIMESTAMP_SHIFT = 16;
+
+    private final Snowflake snowflake;
+
+    /**
+     * 构造方法
+     *
+     * @param snowflake 提供时间,节点标识与sequence的Snowflake
+     */
+    public UuidV7Generator(Snowflake snowflake) {
+        this.snowflake = snowflake;
+    }
+
+    /**
+     * 生成UUID,高64位写入dst[offset],低64位写入dst[offset + 1]
+     *
+     * @param dst    存放结果的数组
+     * @param offset 起始位置
+     */
+    public void next(long[] dst, int offset) {
+        long id = snowflake.getId();
+        dst[offset] = mostSigBits(id);
+        dst[offset + 1] = leastSigBits(id);
+    }
+
+    /**
+     * 批量生成UUID,第i个UUID的高64位写入dst[offset + 2i],低64位写入dst[offset + 2i + 1]
+     * snowflake为IdWorker时只获取一次锁
+     *
+     * @param dst    存放结果的数组,长度至少为offset + 2 * count
+     * @param offset 起始位置
+     * @param count  生成数量
+     */
+    public void next(long[] dst, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + 2L * count > dst.length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", count: " + count + ", array length: " + dst.length);
+        }
+        //先把Snowflake ID放在后半部分,再从前往后展开,读取位置始终不小于写入位置,无需临时数组
+        int idOffset = offset + count;
+        if (snowflake instanceof IdWorker) {
+            ((IdWorker) snowflake).getIds(dst, idOffset, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                dst[idOffset + i] = snowflake.getId();
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            long id = dst[idOffset + i];
+            dst[offset + 2 * i] = mostSigBits(id);
+            dst[offset + 2 * i + 1] = leastSigBits(id);
+        }
+    }
+
+    /**
+     * 生成UUID,以16字节大端序写入dst的当前位置
+     * 无论dst的字节序如何都按RFC 9562的大端序写入,写入后恢复dst原来的字节序
+     *
+     * @param dst 存放结果的ByteBuffer
+     */
+    public void next(ByteBuffer dst) {
+        long id = snowflake.getId();
+        ByteOrder order = dst.order();
+        dst.order(ByteOrder.BIG_ENDIAN);
+        try {
+            dst.putLong(mostSigBits(id));
+            dst.putLong(leastSigBits(id));
+        } finally {
+            dst.order(order);
+        }
+    }
+
+    /**
+     * 生成UUID对象,会创建对象,高频调用时建议使用next(long[], int)
+     *
+     * @return UUID
+     */
+    public UUID nextUuid() {
+        long id = snowflake.getId();
+        return new UUID(mostSigBits(id), leastSigBits(id));
+    }
+
+    /**
+     * 从UUID的高64位读取Unix毫秒时间
+     *
+     * @param mostSigBits UUID的高64位
+     * @return Unix毫秒时间
+     */
+    public static long timestampOf(long mostSigBits) {
+        return mostSigBits >>> TIMESTAMP_SHIFT;
+    }
+
+    /**
+     * 从UUID的低64位读取节点标识
+     *
+     * @param leastSigBits UUID的低64位
+     * @return 节点标识
+     */
+    public static long workerIdOf(long leastSigBits) {
+        return leastSigBits >>> RANDOM_BITS & IdWorker.MAX_WORKER_ID;
+    }
+
+    private long mostSigBits(long id) {
+        long timestamp = (id >>> IdWorker.TIMESTAMP_SHIFT) + snowflake.getEpoch();
+        return timestamp << TIMESTAMP_SHIFT | VERSION | id & IdWorker.MAX_SEQUENCE;
+    }
+
+    private static long leastSigBits(long id) {
+        long workerId = id >>> IdWorker.WORKER_ID_SHIFT & IdWorker.MAX_WORKER_ID;
+        return VARIANT | workerId << RANDOM_BITS | ThreadLocalRandom.current().nextLong() & MAX_RANDOM;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.github.xydonne.snowflake;
+
+/**
+ * 节点ID分配的SPI,不同的协调方式(Zookeeper,本机文件锁)实现此接口后可互相替换
+ * 已释放的节点ID需记录其最后时间,在隔离时间过后才能被重新分配,避免时钟回拨导致ID重复
+ *
+ * @author Donney
+ **/
+public interface WorkerIdAllocator {
+
+    /**
+     * 分配一个空余的节点ID
+     *
+     * @param listener 节点ID丢失(如被其他进程占用)时的回调,可以为null
+     * @return 节点ID
+     */
+    long acquire(Listener listener);
+
+    /**
+     * 释放节点ID,并记录其最后时间
+     *
+     * @param workerId      节点ID
+     * @param lastTimestamp 节点ID最后生成ID的时间
+     */
+    void release(long workerId, long lastTimestamp);
+
+    /**
+     * 节点ID是否仍由此分配器持有
+     *
+     * @param workerId 节点ID
+     * @return 是否持有
+     */
+    boolean isHeld(long workerId);
+
+    /**
+     * 关闭分配器,不释放已分配的节点ID
+     */
+    void close();
+
+    /**
+     * 节点ID丢失的回调
+     */
+    interface Listener {
+
+        /**
+         * 节点ID已不再由此分配器持有,持有者应释放并重新分配节点ID
+         *
+         * @param workerId 丢失的节点ID
+         */
+        void workerIdLost(long workerId);
+
+    }
+
+}
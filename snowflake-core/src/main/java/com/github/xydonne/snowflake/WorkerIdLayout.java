@@ -0,0 +1,120 @@
+package com.github.xydonne.snowflake;
+
+/**
+ * 10位节点标识的分层布局: 高位为区域(数据中心)标识 + 低位为区域内的节点标识
+ * 区域标识静态配置,区域内的节点标识由各区域自己的Zookeeper分配,互不影响
+ * 例如regionBits为3时,最多8个区域,每个区域最多128个节点
+ *
+ * @author Donney
+ **/
+public class WorkerIdLayout {
+
+    // 区域标识位数
+    private final int regionBits;
+    // 区域内节点标识位数
+    private final int localWorkerBits;
+    // 区域标识最大值
+    private final long maxRegionId;
+    // 区域内节点标识最大值
+    private final long maxLocalWorkerId;
+
+    /**
+     * 构造方法
+     *
+     * @param regionBits 区域标识位数(0-10), 0表示不区分区域
+     */
+    public WorkerIdLayout(int regionBits) {
+        if (regionBits < 0 || regionBits > IdWorker.WORKER_ID_BITS) {
+            throw new IllegalArgumentException(String.format("regionBits can't be greater than %d or less than 0", IdWorker.WORKER_ID_BITS));
+        }
+        this.regionBits = regionBits;
+        this.localWorkerBits = IdWorker.WORKER_ID_BITS - regionBits;
+        this.maxRegionId = ~(-1L << regionBits);
+        this.maxLocalWorkerId = ~(-1L << localWorkerBits);
+    }
+
+    public int getRegionBits() {
+        return regionBits;
+    }
+
+    public int getLocalWorkerBits() {
+        return localWorkerBits;
+    }
+
+    public long getMaxRegionId() {
+        return maxRegionId;
+    }
+
+    public long getMaxLocalWorkerId() {
+        return maxLocalWorkerId;
+    }
+
+    /**
+     * 由区域标识与区域内节点标识组成节点标识
+     *
+     * @param regionId      区域标识
+     * @param localWorkerId 区域内节点标识
+     * @return 节点标识
+     */
+    public long workerId(long regionId, long localWorkerId) {
+        if (regionId > maxRegionId || regionId < 0) {
+            throw new IllegalArgumentException(String.format("regionId can't be greater than %d or less than 0", maxRegionId));
+        }
+        if (localWorkerId > maxLocalWorkerId || localWorkerId < 0) {
+            throw new IllegalArgumentException(String.format("localWorkerId can't be greater than %d or less than 0", maxLocalWorkerId));
+        }
+        return regionId << localWorkerBits | localWorkerId;
+    }
+
+    /**
+     * 从Snowflake ID中读取区域标识
+     *
+     * @param id Snowflake ID
+     * @return 区域标识
+     */
+    public long regionOf(long id) {
+        return regionOfWorkerId(workerIdOf(id));
+    }
+
+    /**
+     * 从节点标识中读取区域标识
+     *
+     * @param workerId 节点标识
+     * @return 区域标识
+     */
+    public long regionOfWorkerId(long workerId) {
+        return workerId >>> localWorkerBits;
+    }
+
+    /**
+     * 从Snowflake ID中读取区域内节点标识
+     *
+     * @param id Snowflake ID
+     * @return 区域内节点标识
+     */
+    public long localWorkerIdOf(long id) {
+        return workerIdOf(id) & maxLocalWorkerId;
+    }
+
+    /**
+     * 从Snowflake ID中读取节点标识
+     *
+     * @param id Snowflake ID
+     * @return 节点标识
+     */
+    public static long workerIdOf(long id) {
+        return id >>> IdWorker.WORKER_ID_SHIFT & IdWorker.MAX_WORKER_ID;
+    }
+
+    /**
+     * 从Snowflake ID中读取生成时间
+     *
+     * @param id    Snowflake ID
+     * @param epoch 时间起始标记点
+     * @return 生成时间(单位:毫秒)
+     */
+    public static long timestampOf(long id, long epoch) {
+        return (id >>> IdWorker.TIMESTAMP_SHIFT) + epoch;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.github.xydonne.snowflake;
+
+/**
+ * 热点路径上与JDK版本相关的操作,Java 21的实现
+ * 探针值直接取线程ID,不使用ThreadLocal,大量短生命周期的虚拟线程不会各自创建ThreadLocal条目
+ *
+ * @author Donney
+ **/
+final class ThreadHints {
+
+    private ThreadHints() {
+    }
+
+    /**
+     * 忙等待时调用
+     */
+    static void onSpinWait() {
+        Thread.onSpinWait();
+    }
+
+    /**
+     * 获取当前线程的探针值(非负数),线程ID按创建顺序递增
+     */
+    static int probe() {
+        return (int) Thread.currentThread().threadId() & Integer.MAX_VALUE;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.github.xydonne.snowflake;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热点路径上与JDK版本相关的操作,Java 9的实现
+ * 忙等待时使用Thread.onSpinWait(),在x86上为PAUSE指令,降低功耗并让出超线程的执行资源
+ *
+ * @author Donney
+ **/
+final class ThreadHints {
+
+    //为每个线程分配的探针值,按线程创建顺序递增,使线程均匀分布到各IdWorker
+    private static final AtomicInteger PROBE_GENERATOR = new AtomicInteger();
+
+    private static final ThreadLocal<Integer> PROBE = ThreadLocal.withInitial(() -> PROBE_GENERATOR.getAndIncrement() & Integer.MAX_VALUE);
+
+    private ThreadHints() {
+    }
+
+    /**
+     * 忙等待时调用
+     */
+    static void onSpinWait() {
+        Thread.onSpinWait();
+    }
+
+    /**
+     * 获取当前线程的探针值(非负数)
+     */
+    static int probe() {
+        return PROBE.get();
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.ElasticSnowflake;
+import com.github.xydonne.snowflake.FileLockWorkerIdAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Donney
+ **/
+public class ElasticSnowflakeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 测试sequence用尽时扩容,负载连续低于阈值后缩容,并在下一周期释放节点ID
+     */
+    @Test
+    public void testRebalance() {
+
+        FileLockWorkerIdAllocator allocator = new FileLockWorkerIdAllocator(folder.getRoot());
+        //定时任务不会执行,由测试调用rebalance()
+        ElasticSnowflake elastic = new ElasticSnowflake(allocator, 2, 0L, 1L, 60 * 60 * 1000L, 1L, 1000 * 1000 * 1000L, 2);
+
+        assertThat("WorkerIds are not equal!", elastic.getWorkerIds(), equalTo(new long[]{0L}));
+
+        Set<Long> idSet = new HashSet<>();
+        for (int i = 0; i < 500000; i++) {
+            idSet.add(elastic.getId());
+        }
+        elastic.rebalance();
+        assertThat("Snowflake is not scaled up!", elastic.getWorkerIds(), equalTo(new long[]{0L, 1L}));
+
+        //节点ID数量不变时,同一线程固定使用一个节点ID,得到的ID递增
+        long lastId = elastic.getId();
+        idSet.add(lastId);
+        for (int i = 1; i < 10; i++) {
+            long id = elastic.getId();
+            idSet.add(id);
+            assertThat("WorkerId of the thread is changed!", id >> 12 & 1023L, equalTo(lastId >> 12 & 1023L));
+            assertThat("Id is not increasing!", id > lastId, equalTo(true));
+            lastId = id;
+        }
+
+        elastic.rebalance();
+        assertThat("Snowflake is scaled down before cool down!", elastic.getWorkerIds().length, equalTo(2));
+        elastic.rebalance();
+        assertThat("Snowflake is not scaled down!", elastic.getWorkerIds(), equalTo(new long[]{0L}));
+        assertThat("Retired workerId is released before draining!", allocator.isHeld(1L), equalTo(true));
+
+        elastic.rebalance();
+        assertThat("Retired workerId is not released!", allocator.isHeld(1L), equalTo(false));
+
+        for (int i = 0; i < 100000; i++) {
+            idSet.add(elastic.getId());
+        }
+        assertThat("Id is repeated!", idSet.size(), equalTo(600010));
+        assertThat("Generated count is not equal!", elastic.getGeneratedCount(), equalTo(600010L));
+
+        elastic.close();
+        assertThat("WorkerId is not released!", allocator.isHeld(0L), equalTo(false));
+
+    }
+
+    /**
+     * 测试节点ID数量不超过maxWorkers
+     */
+    @Test
+    public void testMaxWorkers() {
+
+        FileLockWorkerIdAllocator allocator = new FileLockWorkerIdAllocator(folder.getRoot());
+        ElasticSnowflake elastic = new ElasticSnowflake(allocator, 1, 0L, 1L, 60 * 60 * 1000L, 0L, 1000 * 1000 * 1000L, 2);
+
+        for (int i = 0; i < 100000; i++) {
+            elastic.getId();
+        }
+        elastic.rebalance();
+        assertThat("Snowflake is scaled beyond maxWorkers!", elastic.getWorkerIds(), equalTo(new long[]{0L}));
+
+        elastic.close();
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.CoordinatedIdWorker;
+import com.github.xydonne.snowflake.FileLockWorkerIdAllocator;
+import com.github.xydonne.snowflake.WorkerIdAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Donney
+ **/
+public class FileLockWorkerIdAllocatorTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 测试共享目录下的多个分配器分配不同的节点ID
+     */
+    @Test
+    public void distinctWorkerIdTest() {
+
+        FileLockWorkerIdAllocator first = new FileLockWorkerIdAllocator(folder.getRoot());
+        FileLockWorkerIdAllocator second = new FileLockWorkerIdAllocator(folder.getRoot());
+
+        CoordinatedIdWorker firstWorker = new CoordinatedIdWorker(first);
+        CoordinatedIdWorker secondWorker = new CoordinatedIdWorker(second);
+
+        assertThat("WorkerId is duplicate!", firstWorker.getWorkerId(), not(equalTo(secondWorker.getWorkerId())));
+
+        assertThat("WorkerId is not held!", firstWorker.isRegistered(), equalTo(true));
+
+        firstWorker.close();
+        secondWorker.close();
+
+        assertThat("WorkerId is not released!", firstWorker.isRegistered(), equalTo(false));
+
+    }
+
+    /**
+     * 测试关闭后不能再以已释放的节点ID生成ID
+     */
+    @Test
+    public void closedTest() {
+
+        CoordinatedIdWorker worker = new CoordinatedIdWorker(new FileLockWorkerIdAllocator(folder.getRoot()));
+        worker.getId();
+        worker.close();
+
+        assertThat("Worker is not closed!", worker.isClosed(), equalTo(true));
+        try {
+            worker.getIds(new long[10], 0, 10);
+            fail("Ids are generated after close!");
+        } catch (IllegalStateException e) {
+            assertThat("Exception message is not equal!", e.getMessage(), equalTo("The worker id 0 is released! The snowflake is closed."));
+        }
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("The worker id 0 is released! The snowflake is closed.");
+        worker.getId();
+
+    }
+
+    /**
+     * 测试节点ID丢失后未能重新分配时不再以丢失的节点ID生成ID,下次生成ID时重新分配
+     */
+    @Test
+    public void lostTest() {
+
+        final FileLockWorkerIdAllocator delegate = new FileLockWorkerIdAllocator(folder.getRoot());
+        final boolean[] full = {false};
+        final WorkerIdAllocator.Listener[] listeners = new WorkerIdAllocator.Listener[1];
+        WorkerIdAllocator allocator = new WorkerIdAllocator() {
+            @Override
+            public long acquire(Listener listener) {
+                if (full[0]) {
+                    throw new IllegalStateException("The snowflake node is full!");
+                }
+                listeners[0] = listener;
+                return delegate.acquire(listener);
+            }
+
+            @Override
+            public void release(long workerId, long lastTimestamp) {
+                delegate.release(workerId, lastTimestamp);
+            }
+
+            @Override
+            public boolean isHeld(long workerId) {
+                return delegate.isHeld(workerId);
+            }
+
+            @Override
+            public void close() {
+                delegate.close();
+            }
+        };
+
+        CoordinatedIdWorker worker = new CoordinatedIdWorker(allocator);
+        assertThat("WorkerId is not equal!", worker.getId() >> 12 & 1023L, equalTo(0L));
+
+        full[0] = true;
+        try {
+            listeners[0].workerIdLost(0L);
+            fail("WorkerId is reassigned!");
+        } catch (IllegalStateException ignored) {
+        }
+        assertThat("Lost workerId is not released!", delegate.isHeld(0L), equalTo(false));
+        try {
+            worker.getId();
+            fail("Id is generated with the lost workerId!");
+        } catch (IllegalStateException e) {
+            assertThat("Exception message is not equal!", e.getMessage(), equalTo("The snowflake node is full!"));
+        }
+
+        full[0] = false;
+        assertThat("WorkerId is not reassigned!", worker.getId() >> 12 & 1023L, equalTo(1L));
+        worker.close();
+
+    }
+
+    /**
+     * 测试已释放的节点ID在隔离时间内不会被重新分配
+     */
+    @Test
+    public void quarantineTest() {
+
+        FileLockWorkerIdAllocator allocator = new FileLockWorkerIdAllocator(folder.getRoot(), 2, 60 * 1000L);
+
+        CoordinatedIdWorker worker = new CoordinatedIdWorker(allocator);
+        long workerId = worker.getWorkerId();
+        worker.getId();
+        worker.close();
+
+        CoordinatedIdWorker another = new CoordinatedIdWorker(allocator);
+        assertThat("Quarantined workerId is reused!", another.getWorkerId(), not(equalTo(workerId)));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("The snowflake node is full! The max node amount is 2.");
+        new CoordinatedIdWorker(allocator);
+
+    }
+
+    /**
+     * 测试隔离时间过后,优先选择最早释放的节点ID
+     */
+    @Test
+    public void leastRecentlyReleasedTest() throws IOException {
+
+        long now = System.currentTimeMillis();
+        writeState(new File(folder.getRoot(), "worker-0.lock"), now - 1000L);
+        writeState(new File(folder.getRoot(), "worker-1.lock"), now - 3000L);
+        writeState(new File(folder.getRoot(), "worker-2.lock"), now - 2000L);
+
+        FileLockWorkerIdAllocator allocator = new FileLockWorkerIdAllocator(folder.getRoot(), 3, 500L);
+
+        assertThat("WorkerId is not the least recently released one!", allocator.acquire(null), equalTo(1L));
+        assertThat("WorkerId is not the least recently released one!", allocator.acquire(null), equalTo(2L));
+
+    }
+
+    /**
+     * 测试标记为使用中但未加锁(持有者异常退出)的节点ID,被回收并进入隔离
+     */
+    @Test
+    public void reclaimDeadSlotTest() throws IOException {
+
+        File file = new File(folder.getRoot(), "worker-0.lock");
+        writeState(file, -1L);
+
+        FileLockWorkerIdAllocator allocator = new FileLockWorkerIdAllocator(folder.getRoot(), 1, 60 * 1000L);
+
+        try {
+            allocator.acquire(null);
+            fail("All free snowflake nodes should be quarantined!");
+        } catch (IllegalStateException e) {
+            assertThat("Exception message is not equal!", e.getMessage().startsWith("All free snowflake nodes are quarantined!"), equalTo(true));
+        }
+
+        assertThat("Dead slot is not quarantined!", readState(file) > 0, equalTo(true));
+
+    }
+
+    private static void writeState(File file, long state) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.writeLong(state);
+        }
+    }
+
+    private static long readState(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            return randomAccessFile.readLong();
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.GenerationIndex;
+import com.github.xydonne.snowflake.GenerationJournal;
+import com.github.xydonne.snowflake.IdWorker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Donney
+ **/
+public class GenerationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 测试由生成记录重建索引,每个ID都能查询到生成的进程与节点ID
+     */
+    @Test
+    public void testIndex() throws Exception {
+
+        File file = new File(folder.getRoot(), "snowflake.journal");
+        long epoch = 946656000000L;
+        long[] ids = new long[300000];
+
+        try (GenerationJournal journal = new GenerationJournal(file)) {
+            IdWorker idWorker = new IdWorker(3L, epoch);
+            idWorker.setJournal(journal);
+            idWorker.getIds(ids, 0, 150000);
+            Thread.sleep(1100L);
+            idWorker.setWorkerID(4L);
+            idWorker.getIds(ids, 150000, 150000);
+            idWorker.flushJournal();
+
+            long exhausted = 0L;
+            long issued = 0L;
+            for (GenerationJournal.Record record : GenerationJournal.read(file)) {
+                if (record.getType() == GenerationJournal.SEQUENCE_EXHAUSTED) {
+                    exhausted += record.getValue2();
+                } else if (record.getType() == GenerationJournal.ISSUED) {
+                    issued += record.getValue3();
+                }
+            }
+            assertThat("Issued count is not equal!", issued, equalTo((long) ids.length));
+            assertThat("Exhausted count is not equal!", exhausted, equalTo(idWorker.getExhaustedCount()));
+        }
+
+        GenerationIndex index = GenerationIndex.build(file);
+        assertThat("Index is empty!", index.size() >= 2, equalTo(true));
+        for (int i = 0; i < ids.length; i++) {
+            GenerationIndex.Issuer issuer = index.lookup(ids[i]);
+            assertThat("Id is not indexed!", issuer, notNullValue());
+            assertThat("WorkerId is not equal!", issuer.getWorkerId(), equalTo(i < 150000 ? 3L : 4L));
+            assertThat("Journal is not equal!", issuer.getJournal(), equalTo(file));
+        }
+        assertThat("Unknown id is indexed!", index.lookup(ids[0] - (1000L << 22)), equalTo(null));
+        assertThat("Unknown id is indexed!", index.lookup(ids[0] & ~(1023L << 12) | 5L << 12), equalTo(null));
+
+    }
+
+    /**
+     * 测试按时间起始标记点与节点ID分组,相同节点ID在不同时间起始标记点下的ID范围互不影响
+     */
+    @Test
+    public void testEpoch() {
+
+        File file = new File(folder.getRoot(), "snowflake.journal");
+        long epoch = 946656000000L;
+        long otherEpoch = 1262275200000L;
+        long id;
+        long otherId;
+
+        try (GenerationJournal journal = new GenerationJournal(file)) {
+            IdWorker idWorker = new IdWorker(6L, epoch);
+            idWorker.setJournal(journal);
+            id = idWorker.getId();
+            idWorker.flushJournal();
+
+            IdWorker otherWorker = new IdWorker(6L, otherEpoch);
+            otherWorker.setJournal(journal);
+            otherId = otherWorker.getId();
+            otherWorker.flushJournal();
+        }
+
+        GenerationIndex index = GenerationIndex.build(file);
+        assertThat("Epoch is not equal!", index.lookup(id, epoch).getEpoch(), equalTo(epoch));
+        assertThat("Epoch is not equal!", index.lookup(otherId, otherEpoch).getEpoch(), equalTo(otherEpoch));
+        assertThat("Id is indexed in another epoch!", index.lookup(id, otherEpoch), equalTo(null));
+        assertThat("Id is indexed in another epoch!", index.lookup(otherId, epoch), equalTo(null));
+        try {
+            index.lookup(id);
+            fail("Lookup without epoch is ambiguous!");
+        } catch (IllegalStateException e) {
+            assertThat("Exception message is not equal!", e.getMessage(), equalTo("The index contains ids of 2 epochs, please lookup with the epoch!"));
+        }
+
+    }
+
+    /**
+     * 测试重新打开时追加记录,并在多个映射区域之间更新记录
+     */
+    @Test
+    public void testReopen() {
+
+        File file = new File(folder.getRoot(), "snowflake.journal");
+        IdWorker idWorker = new IdWorker(1L);
+
+        try (GenerationJournal journal = new GenerationJournal(file, 64)) {
+            idWorker.setJournal(journal);
+            idWorker.getId();
+            //每个映射区域只有两条记录,ISSUED记录所在区域已不是当前区域
+            for (long i = 2L; i < 10L; i++) {
+                idWorker.setWorkerID(i);
+            }
+            idWorker.flushJournal();
+        }
+        long first;
+        try (GenerationJournal journal = new GenerationJournal(file, 64)) {
+            idWorker.setJournal(journal);
+            first = idWorker.getId();
+            idWorker.flushJournal();
+        }
+
+        List<GenerationJournal.Record> records = GenerationJournal.read(file);
+        int started = 0;
+        int issued = 0;
+        for (GenerationJournal.Record record : records) {
+            if (record.getType() == GenerationJournal.PROCESS_STARTED) {
+                started++;
+            } else if (record.getType() == GenerationJournal.ISSUED) {
+                issued++;
+                assertThat("Issued range is not flushed!", record.getValue3(), equalTo(1L));
+                assertThat("Issued range is not flushed!", record.getValue2(), equalTo(record.getValue1()));
+            }
+        }
+        assertThat("Process is not recorded!", started, equalTo(2));
+        assertThat("Issued range is not recorded!", issued, equalTo(2));
+        assertThat("Id is not indexed!", GenerationIndex.build(file).lookup(first).getWorkerId(), equalTo(9L));
+
+    }
+
+    /**
+     * 测试多个IdWorker共用记录文件时,更新已不在当前映射区域内的记录
+     */
+    @Test
+    public void testUpdatePreviousChunk() {
+
+        File file = new File(folder.getRoot(), "snowflake.journal");
+        IdWorker first = new IdWorker(1L);
+        IdWorker second = new IdWorker(2L);
+        IdWorker third = new IdWorker(3L);
+
+        try (GenerationJournal journal = new GenerationJournal(file, 64)) {
+            first.setJournal(journal);
+            second.setJournal(journal);
+            first.getId();
+            second.getId();
+            //其他IdWorker追加多个区域的记录后,前两个IdWorker的ISSUED记录都不在当前区域内
+            third.setJournal(journal);
+            for (long i = 4L; i < 12L; i++) {
+                third.setWorkerID(i);
+            }
+            first.flushJournal();
+            second.flushJournal();
+        }
+
+        int issued = 0;
+        for (GenerationJournal.Record record : GenerationJournal.read(file)) {
+            if (record.getType() == GenerationJournal.ISSUED) {
+                issued++;
+                assertThat("Issued range is not flushed!", record.getValue3(), equalTo(1L));
+                assertThat("Issued range is not flushed!", record.getValue2(), equalTo(record.getValue1()));
+            }
+        }
+        assertThat("Issued range is not recorded!", issued, equalTo(2));
+
+    }
+
+    /**
+     * 测试记录文件已被打开时再次打开立即失败,读取记录不会释放文件锁
+     */
+    @Test
+    public void testLock() throws Exception {
+
+        File file = new File(folder.getRoot(), "snowflake.journal");
+
+        try (GenerationJournal journal = new GenerationJournal(file)) {
+            assertThat("Process is not recorded!", GenerationJournal.read(file).size(), equalTo(1));
+            try {
+                new GenerationJournal(file);
+                fail("Journal is opened twice!");
+            } catch (IllegalStateException e) {
+                assertThat("Exception message is not equal!", e.getMessage(), equalTo(file + " is already opened by another generation journal!"));
+            }
+        }
+
+        try (GenerationJournal journal = new GenerationJournal(file)) {
+            assertThat("Process is not recorded!", GenerationJournal.read(file).size(), equalTo(2));
+        }
+
+        //文件锁由其他通道(如其他进程)持有
+        try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+             FileLock ignored = channel.lock()) {
+            new GenerationJournal(file);
+            fail("Journal is opened while locked!");
+        } catch (IllegalStateException e) {
+            assertThat("Exception message is not equal!", e.getMessage(), equalTo(file + " is locked by another process!"));
+        }
+
+    }
+
+    /**
+     * 测试进程在一秒结束前退出时,记录保守地覆盖整秒
+     */
+    @Test
+    public void testOpenRange() {
+
+        File file = new File(folder.getRoot(), "snowflake.journal");
+        long epoch = 946656000000L;
+
+        try (GenerationJournal journal = new GenerationJournal(file)) {
+            IdWorker idWorker = new IdWorker(2L, epoch);
+            idWorker.setJournal(journal);
+            long id = idWorker.getId();
+
+            GenerationIndex.Issuer issuer = GenerationIndex.build(file).lookup(id);
+            long second = ((id >>> 22) + epoch) / 1000L;
+            assertThat("Open range is not recorded!", issuer.getCount(), equalTo(-1L));
+            assertThat("Open range does not cover the second!", issuer.getLastId(), equalTo(((second + 1L) * 1000L - 1L - epoch) << 22 | 2L << 12 | 4095L));
+        }
+
+    }
+
+}
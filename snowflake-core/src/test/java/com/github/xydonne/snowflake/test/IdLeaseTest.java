@@ -0,0 +1,71 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.IdLease;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Donney
+ **/
+public class IdLeaseTest {
+
+    /**
+     * 测试按序号计算ID,ID随序号递增且在租约内
+     */
+    @Test
+    public void testGetId() {
+
+        long epoch = 946656000000L;
+        long start = System.currentTimeMillis();
+        IdLease lease = new IdLease(5L, epoch, start, start + 10L);
+
+        assertThat("Capacity is not equal!", lease.capacity(), equalTo(10L * 4096));
+        assertThat("First id is not equal!", lease.getId(0L), equalTo((start - epoch) << 22 | 5L << 12));
+        assertThat("Id is not equal!", lease.getId(4097L), equalTo((start + 1L - epoch) << 22 | 5L << 12 | 1L));
+
+        long lastId = -1L;
+        for (long i = 0; i < lease.capacity(); i++) {
+            long id = lease.getId(i);
+            assertThat("Id is not increasing!", id > lastId, equalTo(true));
+            assertThat("Id is not contained!", lease.contains(id), equalTo(true));
+            lastId = id;
+        }
+        assertThat("Id is contained!", lease.contains((start + 10L - epoch) << 22 | 5L << 12), equalTo(false));
+        assertThat("Id is contained!", lease.contains((start - epoch) << 22 | 6L << 12), equalTo(false));
+
+    }
+
+    /**
+     * 测试分区覆盖整个窗口且互不重叠
+     */
+    @Test
+    public void testPartition() {
+
+        long start = System.currentTimeMillis();
+        IdLease lease = new IdLease(1L, 0L, start, start + 1000L);
+
+        long capacity = 0L;
+        long lastEnd = start;
+        for (int i = 0; i < 3; i++) {
+            IdLease partition = lease.partition(i, 3);
+            assertThat("Partition is not adjacent!", partition.getStartTimestamp(), equalTo(lastEnd));
+            capacity += partition.capacity();
+            lastEnd = partition.getEndTimestamp();
+        }
+        assertThat("Partition end is not equal!", lastEnd, equalTo(lease.getEndTimestamp()));
+        assertThat("Capacity is not equal!", capacity, equalTo(lease.capacity()));
+
+    }
+
+    /**
+     * 测试序号越界
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        long start = System.currentTimeMillis();
+        new IdLease(1L, 0L, start, start + 1L).getId(4096L);
+    }
+
+}
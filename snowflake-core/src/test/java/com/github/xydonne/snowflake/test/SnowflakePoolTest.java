@@ -0,0 +1,113 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.FileLockWorkerIdAllocator;
+import com.github.xydonne.snowflake.IdWorker;
+import com.github.xydonne.snowflake.Snowflake;
+import com.github.xydonne.snowflake.SnowflakePool;
+import com.github.xydonne.snowflake.WorkerIdLayout;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Donney
+ **/
+public class SnowflakePoolTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnowflakePoolTest.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 测试多线程生成的ID不重复,且来自池中不同的节点ID
+     */
+    @Test
+    public void testGetID() throws InterruptedException {
+
+        final SnowflakePool pool = new SnowflakePool(new FileLockWorkerIdAllocator(folder.getRoot()), 4);
+
+        Set<Long> workerIds = new HashSet<>();
+        for (long each : pool.getWorkerIds()) {
+            workerIds.add(each);
+        }
+        assertThat("WorkerIds are duplicate!", workerIds.size(), equalTo(4));
+
+        final Set<Long> idSet = ConcurrentHashMap.newKeySet();
+        final Set<Long> usedWorkerIds = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        long id = pool.getId();
+                        idSet.add(id);
+                        usedWorkerIds.add(WorkerIdLayout.workerIdOf(id));
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread each : threads) {
+            each.join();
+        }
+
+        assertThat("id is duplicate!", idSet.size(), equalTo(8 * 100000));
+        assertThat("WorkerIds are not all used!", usedWorkerIds, equalTo(workerIds));
+        assertThat("Generated count is not equal!", pool.getGeneratedCount(), equalTo(8 * 100000L));
+
+        pool.close();
+
+    }
+
+    @Test()
+    public void performanceTest() throws InterruptedException {
+
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        SnowflakePool pool = new SnowflakePool(new FileLockWorkerIdAllocator(folder.getRoot()), threads);
+
+        //性能测试
+        logger.info(System.lineSeparator() + "performance testing start.");
+        long single = throughput(new IdWorker(2L), threads);
+        long pooled = throughput(pool, threads);
+        logger.info(System.lineSeparator() + threads + " threads, single IdWorker: " + single + " per second, SnowflakePool(" + threads + "): " + pooled + " per second." + System.lineSeparator() + "performance testing end.");
+
+        pool.close();
+
+    }
+
+    private static long throughput(final Snowflake snowflake, int threadCount) throws InterruptedException {
+        final long testTimes = 2000000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < testTimes; j++) {
+                        snowflake.getId();
+                    }
+                }
+            });
+        }
+        long startTime = System.currentTimeMillis();
+        for (Thread each : threads) {
+            each.start();
+        }
+        for (Thread each : threads) {
+            each.join();
+        }
+        long costTime = Math.max(System.currentTimeMillis() - startTime, 1L);
+        return testTimes * threadCount * 1000 / costTime;
+    }
+
+}
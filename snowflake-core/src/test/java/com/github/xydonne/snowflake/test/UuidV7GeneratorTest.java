@@ -0,0 +1,127 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.IdWorker;
+import com.github.xydonne.snowflake.UuidV7Generator;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Donney
+ **/
+public class UuidV7GeneratorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(UuidV7GeneratorTest.class);
+
+    /**
+     * 测试UUID的版本号,变体,时间与节点标识,以及时间有序与不重复
+     */
+    @Test
+    public void testNext() {
+
+        long workerId = 3L;
+        long epoch = 946656000000L;
+        UuidV7Generator generator = new UuidV7Generator(new IdWorker(workerId, epoch));
+
+        long[] uuid = new long[2];
+        long lastMostSigBits = 0L;
+        Set<UUID> uuidSet = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            long before = System.currentTimeMillis();
+            generator.next(uuid, 0);
+            UUID each = new UUID(uuid[0], uuid[1]);
+
+            assertThat("version is not equal!", each.version(), equalTo(7));
+            assertThat("variant is not equal!", each.variant(), equalTo(2));
+            assertThat("timestamp is not correct!", UuidV7Generator.timestampOf(uuid[0]) >= before, equalTo(true));
+            assertThat("workId is not equal!", UuidV7Generator.workerIdOf(uuid[1]), equalTo(workerId));
+            assertThat("uuid is not ordered!", Long.compareUnsigned(uuid[0], lastMostSigBits) > 0, equalTo(true));
+            assertThat("uuid is duplicate!", uuidSet.add(each), equalTo(true));
+
+            lastMostSigBits = uuid[0];
+        }
+
+    }
+
+    /**
+     * 测试批量生成与写入ByteBuffer
+     */
+    @Test
+    public void testBatchAndByteBuffer() {
+
+        UuidV7Generator generator = new UuidV7Generator(new IdWorker(5L));
+
+        int count = 1000;
+        long[] uuids = new long[1 + 2 * count];
+        generator.next(uuids, 1, count);
+        for (int i = 0; i < count; i++) {
+            UUID each = new UUID(uuids[1 + 2 * i], uuids[2 + 2 * i]);
+            assertThat("version is not equal!", each.version(), equalTo(7));
+            assertThat("workId is not equal!", UuidV7Generator.workerIdOf(uuids[2 + 2 * i]), equalTo(5L));
+            if (i > 0) {
+                assertThat("uuid is not ordered!", Long.compareUnsigned(uuids[1 + 2 * i], uuids[2 * i - 1]) > 0, equalTo(true));
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        generator.next(buffer);
+        buffer.flip();
+        UUID each = new UUID(buffer.getLong(), buffer.getLong());
+        assertThat("version is not equal!", each.version(), equalTo(7));
+        assertThat("uuid is not ordered!", Long.compareUnsigned(each.getMostSignificantBits(), uuids[2 * count - 1]) > 0, equalTo(true));
+
+        //小端序的ByteBuffer也按大端序写入,并保留原字节序
+        ByteBuffer littleEndian = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        generator.next(littleEndian);
+        assertThat("byte order is changed!", littleEndian.order(), equalTo(ByteOrder.LITTLE_ENDIAN));
+        assertThat("version is not in byte 6!", littleEndian.get(6) >> 4 & 0xF, equalTo(7));
+        assertThat("variant is not in byte 8!", littleEndian.get(8) >> 6 & 0x3, equalTo(2));
+        littleEndian.order(ByteOrder.BIG_ENDIAN);
+        assertThat("workId is not equal!", UuidV7Generator.workerIdOf(littleEndian.getLong(8)), equalTo(5L));
+
+    }
+
+    @Test()
+    public void performanceTest() {
+
+        UuidV7Generator generator = new UuidV7Generator(new IdWorker(2L));
+
+        //性能测试
+        logger.info(System.lineSeparator() + "performance testing start.");
+        int testTimes = 10000000;
+        long[] uuid = new long[2];
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < testTimes; i++) {
+            generator.next(uuid, 0);
+        }
+        long costTime = Math.max(System.currentTimeMillis() - startTime, 1L);
+        logger.info(System.lineSeparator() + "UuidV7Generator.next(long[], int) generated " + testTimes + " times," + " cost " + costTime + " millisecond." + System.lineSeparator() + testTimes * 1000L / costTime + " per second.");
+
+        int batchSize = 1024;
+        long[] uuids = new long[2 * batchSize];
+        startTime = System.currentTimeMillis();
+        for (int i = 0; i < testTimes; i += batchSize) {
+            generator.next(uuids, 0, batchSize);
+        }
+        costTime = Math.max(System.currentTimeMillis() - startTime, 1L);
+        logger.info(System.lineSeparator() + "UuidV7Generator.next(long[], int, int) generated " + testTimes + " times," + " cost " + costTime + " millisecond." + System.lineSeparator() + testTimes * 1000L / costTime + " per second.");
+
+        startTime = System.currentTimeMillis();
+        for (int i = 0; i < testTimes; i++) {
+            UUID.randomUUID();
+        }
+        costTime = Math.max(System.currentTimeMillis() - startTime, 1L);
+        logger.info(System.lineSeparator() + "UUID.randomUUID() generated " + testTimes + " times," + " cost " + costTime + " millisecond." + System.lineSeparator() + testTimes * 1000L / costTime + " per second." + System.lineSeparator() + "performance testing end.");
+
+    }
+
+}
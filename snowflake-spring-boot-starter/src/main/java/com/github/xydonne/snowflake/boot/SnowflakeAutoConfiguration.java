@@ -0,0 +1,61 @@
+package com.github.xydonne.snowflake.boot;
+
+import com.github.xydonne.snowflake.Snowflake;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.curator.framework.CuratorFramework;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 基于Zookeeper的Snowflake自动配置,配置snowflake.zk-url后启用
+ *
+ * @author Donney
+ **/
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(CuratorFramework.class)
+@ConditionalOnProperty(prefix = "snowflake", name = "zk-url")
+@EnableConfigurationProperties(SnowflakeProperties.class)
+public class SnowflakeAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SnowflakeRegistration snowflakeRegistration(SnowflakeProperties properties) {
+        return new SnowflakeRegistration(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public Snowflake snowflake(SnowflakeRegistration registration) {
+        return registration.getSnowflake();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(HealthIndicator.class)
+    static class SnowflakeHealthConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "snowflakeHealthIndicator")
+        public SnowflakeHealthIndicator snowflakeHealthIndicator(SnowflakeRegistration registration) {
+            return new SnowflakeHealthIndicator(registration);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterBinder.class)
+    static class SnowflakeMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public SnowflakeMetrics snowflakeMetrics(SnowflakeRegistration registration) {
+            return new SnowflakeMetrics(registration);
+        }
+
+    }
+
+}
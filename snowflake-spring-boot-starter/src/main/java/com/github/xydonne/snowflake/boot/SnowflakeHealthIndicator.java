@@ -0,0 +1,34 @@
+package com.github.xydonne.snowflake.boot;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Snowflake健康检查: 节点是否仍注册在Zookeeper上,并给出节点ID与时间偏差
+ * 注册状态由客户端连接状态与节点监听维护,健康检查不会访问Zookeeper
+ *
+ * @author Donney
+ **/
+public class SnowflakeHealthIndicator extends AbstractHealthIndicator {
+
+    private final SnowflakeRegistration registration;
+
+    public SnowflakeHealthIndicator(SnowflakeRegistration registration) {
+        super("Snowflake health check failed");
+        this.registration = registration;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (registration.isRegistered()) {
+            builder.up();
+        } else {
+            builder.down();
+        }
+        builder.withDetail("workerId", registration.getSnowflake().getWorkerId())
+                .withDetail("regionId", registration.getRegionId())
+                .withDetail("clockSkew", registration.getClockSkew())
+                .withDetail("lastTimestamp", registration.getSnowflake().getLastTimestamp());
+    }
+
+}
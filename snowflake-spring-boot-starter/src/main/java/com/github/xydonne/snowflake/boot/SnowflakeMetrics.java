@@ -0,0 +1,39 @@
+package com.github.xydonne.snowflake.boot;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.lang.NonNull;
+
+/**
+ * Snowflake指标: 已生成ID数量(可计算吞吐量),节点ID,时间偏差与注册状态
+ *
+ * @author Donney
+ **/
+public class SnowflakeMetrics implements MeterBinder {
+
+    private final SnowflakeRegistration registration;
+
+    public SnowflakeMetrics(SnowflakeRegistration registration) {
+        this.registration = registration;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("snowflake.ids.generated", registration, SnowflakeRegistration::getGeneratedCount)
+                .description("Number of snowflake ids generated")
+                .register(registry);
+        Gauge.builder("snowflake.worker.id", registration, r -> r.getSnowflake().getWorkerId())
+                .description("Registered snowflake worker id")
+                .register(registry);
+        Gauge.builder("snowflake.clock.skew", registration, SnowflakeRegistration::getClockSkew)
+                .description("Zookeeper time minus local time at registration")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("snowflake.registered", registration, r -> r.isRegistered() ? 1 : 0)
+                .description("Whether the snowflake node is registered in zookeeper")
+                .register(registry);
+    }
+
+}
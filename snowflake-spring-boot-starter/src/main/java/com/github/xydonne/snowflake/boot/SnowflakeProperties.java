@@ -0,0 +1,123 @@
+package com.github.xydonne.snowflake.boot;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Snowflake自动配置的参数,前缀为snowflake
+ *
+ * @author Donney
+ **/
+@ConfigurationProperties(prefix = "snowflake")
+public class SnowflakeProperties {
+
+    //Zookeeper连接地址,配置后才会启用自动配置
+    private String zkUrl;
+
+    //App节点地址
+    private String appUrl = "/defaultapp";
+
+    //授权username:password
+    private String authority;
+
+    //是否获取远程时间并同步,容器中通常无权修改系统时间,默认关闭
+    private boolean timeSync = false;
+
+    //时间起始标记点
+    private long epoch = 0L;
+
+    //当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+    private long refreshTimeAfterNtp = 1L;
+
+    //已释放节点ID的隔离时间(单位:毫秒)
+    private long quarantineMarginMs = 10 * 1000L;
+
+    //区域标识位数, 0表示不区分区域
+    private int regionBits = 0;
+
+    //区域标识
+    private long regionId = 0L;
+
+    //启动时预热生成ID的次数, 0表示不预热
+    private int warmUpIterations = 20000;
+
+    public String getZkUrl() {
+        return zkUrl;
+    }
+
+    public void setZkUrl(String zkUrl) {
+        this.zkUrl = zkUrl;
+    }
+
+    public String getAppUrl() {
+        return appUrl;
+    }
+
+    public void setAppUrl(String appUrl) {
+        this.appUrl = appUrl;
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    public void setAuthority(String authority) {
+        this.authority = authority;
+    }
+
+    public boolean isTimeSync() {
+        return timeSync;
+    }
+
+    public void setTimeSync(boolean timeSync) {
+        this.timeSync = timeSync;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getRefreshTimeAfterNtp() {
+        return refreshTimeAfterNtp;
+    }
+
+    public void setRefreshTimeAfterNtp(long refreshTimeAfterNtp) {
+        this.refreshTimeAfterNtp = refreshTimeAfterNtp;
+    }
+
+    public long getQuarantineMarginMs() {
+        return quarantineMarginMs;
+    }
+
+    public void setQuarantineMarginMs(long quarantineMarginMs) {
+        this.quarantineMarginMs = quarantineMarginMs;
+    }
+
+    public int getRegionBits() {
+        return regionBits;
+    }
+
+    public void setRegionBits(int regionBits) {
+        this.regionBits = regionBits;
+    }
+
+    public long getRegionId() {
+        return regionId;
+    }
+
+    public void setRegionId(long regionId) {
+        this.regionId = regionId;
+    }
+
+    public int getWarmUpIterations() {
+        return warmUpIterations;
+    }
+
+    public void setWarmUpIterations(int warmUpIterations) {
+        this.warmUpIterations = warmUpIterations;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.github.xydonne.snowflake.boot;
+
+import com.github.xydonne.snowflake.CoordinatedIdWorker;
+import com.github.xydonne.snowflake.Snowflake;
+import com.github.xydonne.snowflake.zookeeper.SnowflakeZkFactory;
+import com.github.xydonne.snowflake.zookeeper.ZkWorkerIdAllocator;
+import org.apache.curator.framework.CuratorFramework;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * 管理节点ID的注册与关闭
+ * 每个应用上下文使用各自的Zookeeper客户端与节点ID,不经过SnowflakeZkFactory的单例,同一JVM中的多个上下文互不影响
+ * 创建时完成注册与预热,因此在应用就绪前即可生成ID;销毁时记录节点ID的最后时间并立即删除节点,滚动重启时不会占用节点ID
+ *
+ * @author Donney
+ **/
+public class SnowflakeRegistration implements DisposableBean {
+
+    private final CuratorFramework client;
+
+    private final ZkWorkerIdAllocator allocator;
+
+    private final CoordinatedIdWorker snowflake;
+
+    private final SnowflakeProperties properties;
+
+    public SnowflakeRegistration(SnowflakeProperties properties) {
+        if (null == properties.getAppUrl()) {
+            throw new IllegalArgumentException("appUrl cannot be null!");
+        }
+        this.properties = properties;
+        this.client = SnowflakeZkFactory.newClient(properties.getZkUrl(), properties.getAuthority());
+        try {
+            this.allocator = new ZkWorkerIdAllocator(client, properties.getAppUrl(), properties.getQuarantineMarginMs(),
+                    properties.getRegionBits(), properties.getRegionId(), properties.isTimeSync());
+            this.snowflake = new CoordinatedIdWorker(allocator, properties.getEpoch(), properties.getRefreshTimeAfterNtp());
+        } catch (RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        warmUp();
+    }
+
+    /**
+     * 预热生成ID的代码路径,使其在应用就绪前完成JIT编译
+     * 直接使用已注册的节点生成ID,预热的是实际使用的对象;预热的ID被丢弃,也计入已生成ID的数量
+     */
+    private void warmUp() {
+        for (int i = 0; i < properties.getWarmUpIterations(); i++) {
+            snowflake.getId();
+        }
+    }
+
+    public Snowflake getSnowflake() {
+        return snowflake;
+    }
+
+    public boolean isRegistered() {
+        return snowflake.isRegistered();
+    }
+
+    public long getClockSkew() {
+        return allocator.getClockSkew();
+    }
+
+    public long getRegionId() {
+        return allocator.getLayout().regionOfWorkerId(snowflake.getWorkerId());
+    }
+
+    /**
+     * 获取已生成ID的数量,包括预热生成的ID,单调递增
+     *
+     * @return 已生成ID的数量
+     */
+    public long getGeneratedCount() {
+        return snowflake.getGeneratedCount();
+    }
+
+    @Override
+    public void destroy() {
+        snowflake.close();
+        allocator.close();
+        client.close();
+    }
+
+}
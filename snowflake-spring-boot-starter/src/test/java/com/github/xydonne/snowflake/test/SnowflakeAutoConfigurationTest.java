@@ -0,0 +1,119 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.Snowflake;
+import com.github.xydonne.snowflake.boot.SnowflakeAutoConfiguration;
+import com.github.xydonne.snowflake.boot.SnowflakeHealthIndicator;
+import com.github.xydonne.snowflake.boot.SnowflakeMetrics;
+import com.github.xydonne.snowflake.boot.SnowflakeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.BaseClassForTests;
+import org.apache.curator.test.Timing;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Donney
+ **/
+public class SnowflakeAutoConfigurationTest extends BaseClassForTests {
+
+    private static final String APP_PATH = "/snowflake/bootapp";
+
+    private CuratorFramework client;
+
+    private ApplicationContextRunner contextRunner;
+
+    @Before
+    public void before() throws Exception {
+        super.setup();
+        Timing timing = new Timing();
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), timing.session(), 1, new RetryNTimes(1000, 1000));
+        client.start();
+        contextRunner = new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(SnowflakeAutoConfiguration.class))
+                .withPropertyValues("snowflake.zk-url=" + server.getConnectString(), "snowflake.app-url=/bootapp");
+    }
+
+    @After
+    public void after() throws Exception {
+        client.close();
+        super.teardown();
+    }
+
+    /**
+     * 测试未配置zk-url时不启用自动配置
+     */
+    @Test
+    public void disabledWithoutZkUrlTest() {
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(SnowflakeAutoConfiguration.class))
+                .run(context -> assertThat("Snowflake should not be configured!", context.getBeansOfType(Snowflake.class).isEmpty(), equalTo(true)));
+    }
+
+    /**
+     * 测试自动配置注册节点,健康检查与指标
+     */
+    @Test
+    public void autoConfigurationTest() {
+        contextRunner.run(context -> {
+            Snowflake snowflake = context.getBean(Snowflake.class);
+            snowflake.getId();
+
+            assertThat("SnowflakeNode is not created!", client.checkExists().forPath(APP_PATH + "/" + snowflake.getWorkerId()), notNullValue());
+
+            Health health = context.getBean(SnowflakeHealthIndicator.class).health();
+            assertThat("Health status is not up!", health.getStatus(), equalTo(Status.UP));
+            assertThat("WorkerId is not equal!", health.getDetails().get("workerId"), equalTo((Object) snowflake.getWorkerId()));
+
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            context.getBean(SnowflakeMetrics.class).bindTo(registry);
+            //预热生成的ID也计入数量
+            long warmUpIterations = context.getBean(SnowflakeProperties.class).getWarmUpIterations();
+            assertThat("Generated count is not equal!", registry.get("snowflake.ids.generated").functionCounter().count(), equalTo(warmUpIterations + 1.0));
+        });
+    }
+
+    /**
+     * 测试应用关闭时立即删除节点
+     */
+    @Test
+    public void shutdownReleasesNodeTest() throws Exception {
+        final long[] workerId = new long[1];
+        contextRunner.run(context -> workerId[0] = context.getBean(Snowflake.class).getWorkerId());
+
+        assertThat("SnowflakeNode is not deleted!", client.checkExists().forPath(APP_PATH + "/" + workerId[0]), equalTo(null));
+    }
+
+    /**
+     * 测试同一JVM中的两个应用上下文各自注册节点,关闭其中一个不影响另一个
+     */
+    @Test
+    public void independentContextsTest() {
+        contextRunner.run(first -> {
+            Snowflake firstSnowflake = first.getBean(Snowflake.class);
+            long[] secondWorkerId = new long[1];
+            contextRunner.run(second -> {
+                secondWorkerId[0] = second.getBean(Snowflake.class).getWorkerId();
+                assertThat("WorkerId should not be equal!", secondWorkerId[0], not(equalTo(firstSnowflake.getWorkerId())));
+            });
+
+            assertThat("Second SnowflakeNode is not deleted!", client.checkExists().forPath(APP_PATH + "/" + secondWorkerId[0]), equalTo(null));
+            assertThat("First SnowflakeNode is deleted!", client.checkExists().forPath(APP_PATH + "/" + firstSnowflake.getWorkerId()), notNullValue());
+            assertThat("First snowflake is not registered!", first.getBean(SnowflakeHealthIndicator.class).health().getStatus(), equalTo(Status.UP));
+            firstSnowflake.getId();
+        });
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.github.xydonne.snowflake.zookeeper;
+
+import com.github.xydonne.snowflake.GenerationJournal;
+import com.github.xydonne.snowflake.IdLease;
+import com.github.xydonne.snowflake.IdWorker;
+import com.github.xydonne.snowflake.Snowflake;
+import com.github.xydonne.snowflake.WorkerIdLayout;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 降级启动的Snowflake,注册完成前由持久化的租约生成ID,注册完成后切换到已注册的Snowflake
+ * 租约的节点ID在窗口结束时间加上隔离时间之前不会被分配给其他生成器,因此两者生成的ID不会重复
+ * 租约文件中同时记录高水位,以租约生成的ID的时间均小于高水位;启动时当前时间不晚于高水位(时钟回拨)则不降级,避免重复生成上次运行中的ID
+ *
+ * @author Donney
+ **/
+final class DegradableSnowflake implements Snowflake {
+
+    //每次持久化高水位时预留的时间(单位:毫秒)
+    private static final long HIGH_WATER_STEP_MS = 1000L;
+
+    //持久化租约的文件
+    private final File leaseFile;
+
+    //持久化的租约
+    private final IdLease lease;
+
+    //已持久化的高水位
+    private volatile long highWater;
+
+    //按租约的节点ID生成ID
+    private final IdWorker leased;
+
+    //注册完成后的Snowflake
+    private volatile Snowflake registered;
+
+    //注册失败的原因
+    private volatile Throwable failure;
+
+    private DegradableSnowflake(File leaseFile, IdLease lease, long highWater, long refreshTimeAfterNTP) {
+        this.leaseFile = leaseFile;
+        this.lease = lease;
+        this.highWater = highWater;
+        this.leased = new IdWorker(lease.getWorkerId(), lease.getEpoch(), refreshTimeAfterNTP);
+    }
+
+    /**
+     * 读取持久化的租约
+     *
+     * @param leaseFile           持久化租约的文件
+     * @param epoch               时间起始标记点,与租约不同时不降级
+     * @param refreshTimeAfterNTP 当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+     * @return 降级的Snowflake, 文件不存在或已损坏,租约已过期或当前时间不晚于高水位时返回null
+     */
+    static DegradableSnowflake open(File leaseFile, long epoch, long refreshTimeAfterNTP) {
+        if (!leaseFile.isFile()) {
+            return null;
+        }
+        IdLease lease;
+        long highWater;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(leaseFile))) {
+            lease = new IdLease(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            highWater = in.readLong();
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (lease.getEpoch() != epoch || lease.getEndTimestamp() <= now || highWater >= now) {
+            return null;
+        }
+        return new DegradableSnowflake(leaseFile, lease, highWater, refreshTimeAfterNTP);
+    }
+
+    /**
+     * 持久化租约与高水位,先写入临时文件再替换,避免写入过程中退出导致租约文件损坏
+     *
+     * @param leaseFile 持久化租约的文件
+     * @param lease     租约
+     * @param highWater 高水位,以此租约生成的ID的时间均小于此时间
+     */
+    static void write(File leaseFile, IdLease lease, long highWater) throws IOException {
+        File temp = new File(leaseFile.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(fileOut)) {
+            out.writeLong(lease.getWorkerId());
+            out.writeLong(lease.getEpoch());
+            out.writeLong(lease.getStartTimestamp());
+            out.writeLong(lease.getEndTimestamp());
+            out.writeLong(highWater);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temp.toPath(), leaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    IdLease getLease() {
+        return lease;
+    }
+
+    /**
+     * 是否仍在使用租约生成ID
+     *
+     * @return 是否降级
+     */
+    boolean isDegraded() {
+        return null == registered;
+    }
+
+    void registered(Snowflake snowflake) {
+        this.registered = snowflake;
+    }
+
+    void failed(Throwable cause) {
+        this.failure = cause;
+    }
+
+    void setJournal(GenerationJournal journal) {
+        leased.setJournal(journal);
+    }
+
+    @Override
+    public long getEpoch() {
+        return lease.getEpoch();
+    }
+
+    @Override
+    public long getWorkerId() {
+        return current().getWorkerId();
+    }
+
+    /**
+     * 节点ID由租约或分配器管理,不能直接设置
+     */
+    @Override
+    public void setWorkerID(long workerID) {
+        throw new UnsupportedOperationException("The worker id of a degradable snowflake is managed by its lease and allocator!");
+    }
+
+    @Override
+    public long getLastTimestamp() {
+        return current().getLastTimestamp();
+    }
+
+    /**
+     * 租约窗口结束后仍未注册时抛出异常,异常原因为注册失败的原因(如有)
+     * ID的时间到达高水位时,先持久化新的高水位再返回ID
+     */
+    @Override
+    public long getId() {
+        Snowflake snowflake = registered;
+        if (null != snowflake) {
+            return snowflake.getId();
+        }
+        long id = leased.getId();
+        if (!lease.contains(id)) {
+            throw new IllegalStateException("The persisted lease " + lease + " is expired and the snowflake is not registered yet!", failure);
+        }
+        //从ID本身读取时间,IdWorker的最后时间在其锁外读取可能是过期的值
+        long timestamp = WorkerIdLayout.timestampOf(id, lease.getEpoch());
+        if (timestamp >= highWater) {
+            raiseHighWater(timestamp);
+        }
+        return id;
+    }
+
+    private synchronized void raiseHighWater(long timestamp) {
+        if (timestamp < highWater) {
+            return;
+        }
+        try {
+            write(leaseFile, lease, timestamp + HIGH_WATER_STEP_MS);
+        } catch (IOException e) {
+            throw new IllegalStateException("Persist the high water of lease " + lease + " failed!", e);
+        }
+        highWater = timestamp + HIGH_WATER_STEP_MS;
+    }
+
+    private Snowflake current() {
+        Snowflake snowflake = registered;
+        return null != snowflake ? snowflake : leased;
+    }
+
+}
@@ -0,0 +1,784 @@
+package com.github.xydonne.snowflake.zookeeper;
+
+import com.github.xydonne.snowflake.CoordinatedIdWorker;
+import com.github.xydonne.snowflake.ElasticSnowflake;
+import com.github.xydonne.snowflake.GenerationJournal;
+import com.github.xydonne.snowflake.IdLease;
+import com.github.xydonne.snowflake.Snowflake;
+import com.github.xydonne.snowflake.SnowflakePool;
+import com.github.xydonne.snowflake.WorkerIdLayout;
+
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.ACLProvider;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.retry.BoundedExponentialBackoffRetry;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.server.auth.DigestAuthenticationProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * @author Donney
+ **/
+public class SnowflakeZkFactory {
+
+    //向Zookeeper注册的根节点
+    private static final String SNOWFLAKEU_URL = "/snowflake";
+
+    //默认的隔离时间(单位:毫秒), 已释放的节点ID在其最后时间加上此时间之前不能被重新使用
+    private static final long DEFAULT_QUARANTINE_MARGIN_MS = 10 * 1000;
+
+    //Session过期时间
+    private static final int SESSION_TIMEOUT_MS = 60 * 1000;
+
+    //连接过期时间
+    private static final int CONNECTION_TIMEOUT_MS = 3000;
+
+    //异步注册时单次Zookeeper操作的重试次数,超过后本次注册失败,由按指数退避的重新注册接手;注册完成后恢复默认的重试策略
+    private static final int ASYNC_MAX_RETRIES = 3;
+
+    //异步注册时单次Zookeeper操作的重试间隔上限(单位:毫秒)
+    private static final int ASYNC_MAX_RETRY_SLEEP_MS = 1000;
+
+    //默认重试策略的初始重试间隔(单位:毫秒)
+    private static final int RETRY_BASE_SLEEP_MS = 1000;
+
+    //异步注册失败后,首次重新注册的间隔(单位:毫秒),之后每次失败翻倍
+    private static final long REGISTRATION_RETRY_BASE_MS = 1000;
+
+    //异步注册失败后,重新注册的间隔上限(单位:毫秒)
+    private static final long REGISTRATION_RETRY_MAX_MS = 30 * 1000;
+
+    //Curator客户端
+    private static CuratorFramework client;
+
+    //节点ID分配器
+    private static volatile ZkWorkerIdAllocator allocator;
+
+    //Zookeeper连接地址
+    private static String zkUrl;
+
+    //授权username与Password
+    private static String authority;
+
+    //当检测到ntp时间调整后,再次获取时间的间隔(单位:毫秒)
+    private static long refreshTimeAfterNTP;
+
+    //Snowflake对象
+    private static volatile CoordinatedIdWorker snowflake;
+
+    //异步注册的结果
+    private static CompletableFuture<Snowflake> registration;
+
+    //发起一次异步注册
+    private static Runnable registrationAttempt;
+
+    //异步注册连续失败的次数
+    private static int registrationFailures;
+
+    //最近一次异步注册失败的原因
+    private static Throwable registrationFailure;
+
+    //异步注册与租约续期的线程
+    private static ScheduledExecutorService scheduler;
+
+    //降级启动时的Snowflake对象
+    private static volatile DegradableSnowflake degradable;
+
+    //持久化租约的文件
+    private static File leaseFile;
+
+    //租约的时间窗口长度(单位:毫秒)
+    private static long leaseDurationMs;
+
+    //当前持有的租约
+    private static IdLease lease;
+
+    //生成记录
+    private static GenerationJournal journal;
+
+    private SnowflakeZkFactory() {
+    }
+
+    //获取Snowflake对象,降级启动时返回降级的Snowflake对象,注册完成后其自动切换到已注册的Snowflake
+    public static Snowflake getSnowflake() {
+        if (null != SnowflakeZkFactory.degradable) {
+            return SnowflakeZkFactory.degradable;
+        }
+        if (null != SnowflakeZkFactory.snowflake) {
+            return SnowflakeZkFactory.snowflake;
+        }
+        throw new IllegalStateException("Snowflake must be build first!");
+    }
+
+    /**
+     * 获取节点ID分配器,可用于在同一个App节点下分配更多的节点ID
+     *
+     * @return 节点ID分配器
+     */
+    public static ZkWorkerIdAllocator getAllocator() {
+        if (null != SnowflakeZkFactory.snowflake) {
+            return SnowflakeZkFactory.allocator;
+        }
+        throw new IllegalStateException("Snowflake must be build first!");
+    }
+
+    /**
+     * 从App节点再分配size个节点ID,创建多节点ID的Snowflake池
+     * 池需由调用者在SnowflakeZkFactory.close()之前关闭
+     *
+     * @param size 节点ID数量,建议不超过CPU核数
+     * @return Snowflake池
+     */
+    public static SnowflakePool newPool(int size) {
+        SnowflakePool pool = new SnowflakePool(getAllocator(), size, SnowflakeZkFactory.snowflake.getEpoch(), SnowflakeZkFactory.refreshTimeAfterNTP);
+        if (null != SnowflakeZkFactory.journal) {
+            pool.setJournal(SnowflakeZkFactory.journal);
+        }
+        return pool;
+    }
+
+    /**
+     * 创建按负载伸缩节点ID数量的Snowflake,sequence频繁用尽时从App节点再分配节点ID,负载降低后释放
+     * 需由调用者在SnowflakeZkFactory.close()之前关闭
+     *
+     * @param maxWorkers 最多使用的节点ID数量
+     * @return 按负载伸缩的Snowflake
+     */
+    public static ElasticSnowflake newElastic(int maxWorkers) {
+        ElasticSnowflake elastic = new ElasticSnowflake(getAllocator(), maxWorkers);
+        if (null != SnowflakeZkFactory.journal) {
+            elastic.setJournal(SnowflakeZkFactory.journal);
+        }
+        return elastic;
+    }
+
+    /**
+     * 设置生成记录,节点ID丢失后重新分配时会记录新的节点ID,之后创建的Snowflake池也使用此记录
+     * 生成记录由调用者在SnowflakeZkFactory.close()之后关闭
+     *
+     * @param journal 生成记录,null表示不再记录
+     */
+    public static synchronized void setJournal(GenerationJournal journal) {
+        SnowflakeZkFactory.journal = journal;
+        if (null != SnowflakeZkFactory.snowflake) {
+            SnowflakeZkFactory.snowflake.setJournal(journal);
+        }
+        if (null != SnowflakeZkFactory.degradable) {
+            SnowflakeZkFactory.degradable.setJournal(journal);
+        }
+    }
+
+    /**
+     * 从App节点租用一个节点ID从当前时间开始durationMs毫秒的时间窗口,适用于离线/批量任务按序号直接计算ID
+     * 窗口结束时间加上隔离时间之前,该节点ID不会被其他生成器使用
+     *
+     * @param durationMs 时间窗口长度(单位:毫秒)
+     * @return 租约
+     */
+    public static IdLease lease(long durationMs) {
+        return getAllocator().lease(durationMs, SnowflakeZkFactory.snowflake.getEpoch());
+    }
+
+    /**
+     * 释放租约
+     *
+     * @param lease 租约
+     */
+    public static void releaseLease(IdLease lease) {
+        getAllocator().releaseLease(lease);
+    }
+
+    /**
+     * 当前节点是否仍注册在Zookeeper上(连接正常且节点监听未发现节点丢失),不访问Zookeeper
+     *
+     * @return 是否已注册
+     */
+    public static boolean isRegistered() {
+        return null != SnowflakeZkFactory.snowflake && SnowflakeZkFactory.snowflake.isRegistered();
+    }
+
+    /**
+     * 是否仍在使用持久化的租约生成ID(降级启动且尚未注册完成)
+     *
+     * @return 是否降级
+     */
+    public static boolean isDegraded() {
+        DegradableSnowflake degradable = SnowflakeZkFactory.degradable;
+        return null != degradable && degradable.isDegraded();
+    }
+
+    /**
+     * 获取注册时Zookeeper时间与本机时间的偏差,正数表示本机时间落后
+     *
+     * @return 时间偏差(单位:毫秒)
+     */
+    public static long getClockSkew() {
+        return getAllocator().getClockSkew();
+    }
+
+    //获取节点标识布局,可用于从ID中读取区域标识
+    public static WorkerIdLayout getLayout() {
+        return getAllocator().getLayout();
+    }
+
+    /**
+     * 创建并获取Snowflake对象
+     *
+     * @param zkUrl  zookeeperURL
+     * @param appUrl appName
+     * @return Snowflake
+     */
+    public static Snowflake init(String zkUrl, String appUrl) {
+        return init(zkUrl, appUrl, null, true, 0L, 1L);
+    }
+
+    /**
+     * 创建并获取Snowflake对象
+     *
+     * @param zkUrl     zookeeperURL
+     * @param appUrl    appName
+     * @param authority authority
+     * @return Snowflake
+     */
+    public static Snowflake init(String zkUrl, String appUrl, String authority) {
+        return init(zkUrl, appUrl, authority, true, 0L, 1L);
+    }
+
+    /**
+     * 创建并获取Snowflake对象
+     *
+     * @param zkUrl     zookeeperURL
+     * @param appUrl    appName
+     * @param authority authority
+     * @param timeSync  timeSync
+     * @return Snowflake
+     */
+    public static Snowflake init(String zkUrl, String appUrl, String authority, boolean timeSync) {
+        return init(zkUrl, appUrl, authority, timeSync, 0L, 1L);
+    }
+
+    /**
+     * 创建并获取Snowflake对象
+     *
+     * @param zkUrl               zookeeperURL
+     * @param appUrl              appName
+     * @param authority           authority
+     * @param timeSync            timeSync
+     * @param epoch               epoch
+     * @param refreshTimeAfterNTP refreshTimeAfterNTP
+     * @return Snowflake
+     */
+    public static Snowflake init(String zkUrl, String appUrl, String authority, boolean timeSync, long epoch, long refreshTimeAfterNTP) {
+        return init(zkUrl, appUrl, authority, timeSync, epoch, refreshTimeAfterNTP, DEFAULT_QUARANTINE_MARGIN_MS);
+    }
+
+    /**
+     * 创建并获取Snowflake对象
+     *
+     * @param zkUrl               zookeeperURL
+     * @param appUrl              appName
+     * @param authority           authority
+     * @param timeSync            timeSync
+     * @param epoch               epoch
+     * @param refreshTimeAfterNTP refreshTimeAfterNTP
+     * @param quarantineMarginMs  已释放节点ID的隔离时间(单位:毫秒),需大于各机器之间可能的时钟偏差
+     * @return Snowflake
+     */
+    public static Snowflake init(String zkUrl, String appUrl, String authority, boolean timeSync, long epoch, long refreshTimeAfterNTP, long quarantineMarginMs) {
+        return init(zkUrl, appUrl, authority, timeSync, epoch, refreshTimeAfterNTP, quarantineMarginMs, 0, 0L);
+    }
+
+    /**
+     * 创建并获取区分区域的Snowflake对象
+     * 节点标识的高regionBits位为静态配置的区域标识,低位由zkUrl对应的本区域Zookeeper分配,注册时无需跨区域访问
+     *
+     * @param zkUrl      本区域的zookeeperURL
+     * @param appUrl     appName
+     * @param regionBits 区域标识位数(0-10)
+     * @param regionId   区域标识
+     * @return Snowflake
+     */
+    public static Snowflake init(String zkUrl, String appUrl, int regionBits, long regionId) {
+        return init(zkUrl, appUrl, null, true, 0L, 1L, DEFAULT_QUARANTINE_MARGIN_MS, regionBits, regionId);
+    }
+
+    /**
+     * 创建并获取Snowflake对象
+     *
+     * @param zkUrl               zookeeperURL
+     * @param appUrl              appName
+     * @param authority           authority
+     * @param timeSync            timeSync
+     * @param epoch               epoch
+     * @param refreshTimeAfterNTP refreshTimeAfterNTP
+     * @param quarantineMarginMs  已释放节点ID的隔离时间(单位:毫秒),需大于各机器之间可能的时钟偏差
+     * @param regionBits          区域标识位数(0-10), 0表示不区分区域
+     * @param regionId            区域标识
+     * @return Snowflake
+     */
+    public static synchronized Snowflake init(String zkUrl, String appUrl, String authority, boolean timeSync, long epoch, long refreshTimeAfterNTP, long quarantineMarginMs, int regionBits, long regionId) {
+        if (null != SnowflakeZkFactory.registration) {
+            throw new IllegalStateException("Snowflake is being initialized asynchronously!");
+        }
+        if (null != SnowflakeZkFactory.snowflake) {
+            return SnowflakeZkFactory.snowflake;
+        }
+        if (null == zkUrl || null == appUrl) {
+            throw new IllegalArgumentException("zkUrl and appUrl cannot be null!");
+        }
+        if (zkUrl.startsWith("zookeeper://")){
+            zkUrl = zkUrl.substring("zookeeper://".length());
+        }
+        SnowflakeZkFactory.zkUrl = zkUrl;
+        SnowflakeZkFactory.authority = authority;
+        SnowflakeZkFactory.refreshTimeAfterNTP = refreshTimeAfterNTP;
+        initZkClient();
+        SnowflakeZkFactory.allocator = new ZkWorkerIdAllocator(client, appUrl, quarantineMarginMs, regionBits, regionId, timeSync);
+        SnowflakeZkFactory.snowflake = new CoordinatedIdWorker(allocator, epoch, refreshTimeAfterNTP);
+        if (null != SnowflakeZkFactory.journal) {
+            SnowflakeZkFactory.snowflake.setJournal(SnowflakeZkFactory.journal);
+        }
+        return SnowflakeZkFactory.snowflake;
+    }
+
+    /**
+     * 异步创建Snowflake对象,不阻塞调用线程
+     *
+     * @param zkUrl      zookeeperURL
+     * @param appUrl     appName
+     * @param deadlineMs 注册的最长等待时间(单位:毫秒)
+     * @return 注册完成后得到Snowflake对象, 超时后以TimeoutException结束并关闭连接
+     */
+    public static CompletableFuture<Snowflake> initAsync(String zkUrl, String appUrl, long deadlineMs) {
+        return initAsync(zkUrl, appUrl, null, true, 0L, 1L, DEFAULT_QUARANTINE_MARGIN_MS, 0, 0L, deadlineMs, null, 0L);
+    }
+
+    /**
+     * 异步创建Snowflake对象,不阻塞调用线程,并允许降级启动
+     *
+     * @param zkUrl           zookeeperURL
+     * @param appUrl          appName
+     * @param deadlineMs      注册的最长等待时间(单位:毫秒),存在有效的持久化租约时不等待
+     * @param leaseFile       持久化租约的文件,每个应用实例一个
+     * @param leaseDurationMs 租约的时间窗口长度(单位:毫秒)
+     * @return Snowflake
+     */
+    public static CompletableFuture<Snowflake> initAsync(String zkUrl, String appUrl, long deadlineMs, File leaseFile, long leaseDurationMs) {
+        return initAsync(zkUrl, appUrl, null, true, 0L, 1L, DEFAULT_QUARANTINE_MARGIN_MS, 0, 0L, deadlineMs, leaseFile, leaseDurationMs);
+    }
+
+    /**
+     * 异步创建Snowflake对象,不阻塞调用线程
+     * 创建根节点、App节点与账本节点,以及读取账本与注册节点ID均使用后台操作,回调在独立的守护线程中执行,不阻塞任何线程
+     * 注册期间Zookeeper操作只做有限次数的重试,注册完成后恢复默认的重试策略
+     * 指定leaseFile时,注册完成后租用一个节点ID的时间窗口并写入文件,每半个窗口原地延长一次窗口结束时间;
+     * 下次启动时如果文件中的租约仍在窗口内且当前时间晚于其高水位,则立即以降级的Snowflake结束,由租约生成ID,注册完成后自动切换
+     * 注册失败后按指数退避重新注册,直至超时(降级启动时直至租约窗口结束)
+     *
+     * @param zkUrl               zookeeperURL
+     * @param appUrl              appName
+     * @param authority           authority
+     * @param timeSync            timeSync
+     * @param epoch               epoch
+     * @param refreshTimeAfterNTP refreshTimeAfterNTP
+     * @param quarantineMarginMs  已释放节点ID的隔离时间(单位:毫秒),需大于各机器之间可能的时钟偏差
+     * @param regionBits          区域标识位数(0-10), 0表示不区分区域
+     * @param regionId            区域标识
+     * @param deadlineMs          注册的最长等待时间(单位:毫秒),存在有效的持久化租约时不等待
+     * @param leaseFile           持久化租约的文件,每个应用实例一个, null表示不降级启动
+     * @param leaseDurationMs     租约的时间窗口长度(单位:毫秒),需覆盖Zookeeper可能不可用的时间
+     * @return Snowflake
+     */
+    public static synchronized CompletableFuture<Snowflake> initAsync(String zkUrl, final String appUrl, String authority, final boolean timeSync, final long epoch, final long refreshTimeAfterNTP,
+                                                                      final long quarantineMarginMs, final int regionBits, final long regionId, final long deadlineMs, File leaseFile, long leaseDurationMs) {
+        if (null != SnowflakeZkFactory.registration) {
+            return SnowflakeZkFactory.registration;
+        }
+        if (null != SnowflakeZkFactory.snowflake) {
+            return CompletableFuture.<Snowflake>completedFuture(SnowflakeZkFactory.snowflake);
+        }
+        if (null == zkUrl || null == appUrl) {
+            throw new IllegalArgumentException("zkUrl and appUrl cannot be null!");
+        }
+        if (deadlineMs < 1) {
+            throw new IllegalArgumentException("deadlineMs cannot be less than 1!");
+        }
+        if (null != leaseFile && leaseDurationMs < 2) {
+            throw new IllegalArgumentException("leaseDurationMs cannot be less than 2!");
+        }
+        if (zkUrl.startsWith("zookeeper://")) {
+            zkUrl = zkUrl.substring("zookeeper://".length());
+        }
+        SnowflakeZkFactory.zkUrl = zkUrl;
+        SnowflakeZkFactory.authority = authority;
+        SnowflakeZkFactory.refreshTimeAfterNTP = refreshTimeAfterNTP;
+        SnowflakeZkFactory.leaseFile = leaseFile;
+        SnowflakeZkFactory.leaseDurationMs = leaseDurationMs;
+        buildZkClient(new BoundedExponentialBackoffRetry(100, ASYNC_MAX_RETRY_SLEEP_MS, ASYNC_MAX_RETRIES));
+        //续期租约时的Zookeeper操作为同步操作,因此超时检查与注册回调可使用另一个线程
+        SnowflakeZkFactory.scheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "snowflake-registration");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final CompletableFuture<Snowflake> future = new CompletableFuture<>();
+        SnowflakeZkFactory.registration = future;
+
+        DegradableSnowflake persisted = null == leaseFile ? null : DegradableSnowflake.open(leaseFile, epoch, refreshTimeAfterNTP);
+        if (null != persisted) {
+            SnowflakeZkFactory.degradable = persisted;
+            future.complete(persisted);
+        } else {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    timeout(future, deadlineMs);
+                }
+            }, deadlineMs, TimeUnit.MILLISECONDS);
+        }
+
+        final CuratorFramework zkClient = client;
+        final BackgroundCallback callback = new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) {
+                register(future, client, event.getResultCode(), appUrl, timeSync, epoch, refreshTimeAfterNTP, quarantineMarginMs, regionBits, regionId);
+            }
+        };
+        SnowflakeZkFactory.registrationAttempt = new Runnable() {
+            @Override
+            public void run() {
+                //后台操作在连接建立后执行,回调在注册线程中执行;根节点已存在视为成功
+                try {
+                    zkClient.create().withMode(CreateMode.PERSISTENT).inBackground(callback, scheduler).forPath(SNOWFLAKEU_URL);
+                } catch (Exception e) {
+                    registrationFailed(future, e);
+                }
+            }
+        };
+        registrationAttempt.run();
+        return future;
+    }
+
+    /**
+     * 关闭连接,清除Snowflake对象
+     * 注意只是SnowflakeZkController.getSnowflake()无法获取对象,如果留有snowflake的引用,依旧能生成ID
+     * 所以建议在程序中使用SnowflakeZkController.getSnowflake()
+     * 而非Snowflake snowflake = SnowflakeZkFactory.getSnowflake()
+     * 关闭前会在账本中记录节点ID的最后时间并删除节点,该节点ID在隔离时间过后才会被重新分配
+     */
+    public static synchronized void close() {
+        if (null != SnowflakeZkFactory.registration) {
+            SnowflakeZkFactory.registration.completeExceptionally(new IllegalStateException("Snowflake is closed!"));
+        }
+        if (null != SnowflakeZkFactory.scheduler) {
+            SnowflakeZkFactory.scheduler.shutdownNow();
+        }
+        if (null != client) {
+            if (null != SnowflakeZkFactory.lease) {
+                //只删除租约节点,持久化的租约在下次启动时仍可用于降级
+                SnowflakeZkFactory.allocator.releaseLease(SnowflakeZkFactory.lease);
+            }
+            if (null != SnowflakeZkFactory.snowflake) {
+                SnowflakeZkFactory.snowflake.close();
+            }
+            if (null != SnowflakeZkFactory.allocator) {
+                SnowflakeZkFactory.allocator.close();
+            }
+            client.close();
+        }
+        client = null;
+        SnowflakeZkFactory.allocator = null;
+        SnowflakeZkFactory.snowflake = null;
+        SnowflakeZkFactory.registration = null;
+        SnowflakeZkFactory.registrationAttempt = null;
+        SnowflakeZkFactory.registrationFailures = 0;
+        SnowflakeZkFactory.registrationFailure = null;
+        SnowflakeZkFactory.scheduler = null;
+        SnowflakeZkFactory.degradable = null;
+        SnowflakeZkFactory.leaseFile = null;
+        SnowflakeZkFactory.lease = null;
+        SnowflakeZkFactory.journal = null;
+    }
+
+    /**
+     * 根节点创建完成后,以后台操作创建分配器并注册节点ID,注册完成后创建Snowflake,创建时直接使用已注册的节点ID
+     */
+    private static void register(final CompletableFuture<Snowflake> future, CuratorFramework client, int resultCode, String appUrl, boolean timeSync, final long epoch,
+                                 final long refreshTimeAfterNTP, long quarantineMarginMs, int regionBits, long regionId) {
+        if (resultCode != KeeperException.Code.OK.intValue() && resultCode != KeeperException.Code.NODEEXISTS.intValue()) {
+            registrationFailed(future, KeeperException.create(KeeperException.Code.get(resultCode), SNOWFLAKEU_URL));
+            return;
+        }
+        final Executor executor = SnowflakeZkFactory.scheduler;
+        if (null == executor) {
+            //注册期间已关闭
+            return;
+        }
+        final CompletableFuture<ZkWorkerIdAllocator> created = ZkWorkerIdAllocator.createAsync(client, appUrl, quarantineMarginMs, regionBits, regionId, timeSync, executor);
+        created.thenCompose(new Function<ZkWorkerIdAllocator, CompletionStage<Long>>() {
+            @Override
+            public CompletionStage<Long> apply(ZkWorkerIdAllocator allocator) {
+                return allocator.reserveAsync(executor);
+            }
+        }).whenComplete(new BiConsumer<Long, Throwable>() {
+            @Override
+            public void accept(Long workerId, Throwable e) {
+                if (null != e) {
+                    registrationFailed(future, e instanceof CompletionException && null != e.getCause() ? e.getCause() : e);
+                    return;
+                }
+                ZkWorkerIdAllocator allocator = created.join();
+                CoordinatedIdWorker worker;
+                try {
+                    worker = new CoordinatedIdWorker(allocator, epoch, refreshTimeAfterNTP);
+                } catch (RuntimeException createFailed) {
+                    allocator.release(workerId, System.currentTimeMillis());
+                    allocator.close();
+                    registrationFailed(future, createFailed);
+                    return;
+                }
+                registered(future, allocator, worker);
+            }
+        });
+    }
+
+    /**
+     * 发布注册结果,注册期间已关闭或超时则释放节点ID
+     */
+    private static synchronized void registered(CompletableFuture<Snowflake> future, ZkWorkerIdAllocator allocator, CoordinatedIdWorker worker) {
+        if (SnowflakeZkFactory.registration != future || future.isCompletedExceptionally()) {
+            try {
+                worker.close();
+            } catch (RuntimeException ignored) {
+                //连接已关闭,临时节点随会话删除
+            }
+            allocator.close();
+            return;
+        }
+        //启动时的有限重试只用于注册,之后的续期与重新分配节点ID使用默认的重试策略
+        client.getZookeeperClient().setRetryPolicy(defaultRetryPolicy());
+        SnowflakeZkFactory.allocator = allocator;
+        SnowflakeZkFactory.snowflake = worker;
+        if (null != SnowflakeZkFactory.journal) {
+            worker.setJournal(SnowflakeZkFactory.journal);
+        }
+        if (null != SnowflakeZkFactory.degradable) {
+            SnowflakeZkFactory.degradable.registered(worker);
+        }
+        if (null != SnowflakeZkFactory.leaseFile) {
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        renewLease();
+                    } catch (RuntimeException ignored) {
+                        //续期失败时在下一周期重试
+                    }
+                }
+            }, 0L, leaseDurationMs / 2, TimeUnit.MILLISECONDS);
+        }
+        future.complete(null != SnowflakeZkFactory.degradable ? SnowflakeZkFactory.degradable : worker);
+    }
+
+    /**
+     * 注册失败时按指数退避重新注册;降级启动时重新注册期间继续使用租约,重新注册的时间超出租约窗口时不再重试
+     */
+    private static synchronized void registrationFailed(CompletableFuture<Snowflake> future, Throwable e) {
+        if (SnowflakeZkFactory.registration != future || future.isCompletedExceptionally()) {
+            return;
+        }
+        SnowflakeZkFactory.registrationFailure = e;
+        long delay = Math.min(REGISTRATION_RETRY_BASE_MS << Math.min(registrationFailures, 16), REGISTRATION_RETRY_MAX_MS);
+        registrationFailures++;
+        if (null != SnowflakeZkFactory.degradable) {
+            SnowflakeZkFactory.degradable.failed(e);
+            if (System.currentTimeMillis() + delay >= SnowflakeZkFactory.degradable.getLease().getEndTimestamp()) {
+                return;
+            }
+        }
+        scheduler.schedule(registrationAttempt, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 超时仍未注册时以TimeoutException结束并关闭连接,异常原因为最近一次注册失败的原因(如有)
+     */
+    private static synchronized void timeout(CompletableFuture<Snowflake> future, long deadlineMs) {
+        if (SnowflakeZkFactory.registration != future) {
+            return;
+        }
+        TimeoutException timeout = new TimeoutException("Snowflake is not registered in " + deadlineMs + " milliseconds!");
+        timeout.initCause(SnowflakeZkFactory.registrationFailure);
+        if (future.completeExceptionally(timeout)) {
+            close();
+        }
+    }
+
+    /**
+     * 延长当前租约的时间窗口并写入文件;尚未持有租约或租约节点已丢失时,租用新的时间窗口并删除旧租约的节点
+     * 原地延长租约,每个实例只有一个节点ID处于租约中
+     */
+    private static synchronized void renewLease() {
+        if (null == SnowflakeZkFactory.allocator) {
+            return;
+        }
+        IdLease current = SnowflakeZkFactory.lease;
+        IdLease renewed = null;
+        if (null != current) {
+            try {
+                renewed = allocator.renewLease(current, leaseDurationMs);
+            } catch (IllegalStateException e) {
+                //租约节点已丢失,改为租用新的时间窗口
+            }
+        }
+        boolean leased = null == renewed;
+        if (leased) {
+            renewed = allocator.lease(leaseDurationMs, snowflake.getEpoch());
+        }
+        try {
+            //本进程不以租约生成ID,高水位为窗口开始时间
+            DegradableSnowflake.write(leaseFile, renewed, renewed.getStartTimestamp());
+        } catch (IOException e) {
+            if (leased) {
+                allocator.releaseLease(renewed);
+            } else {
+                SnowflakeZkFactory.lease = renewed;
+            }
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        if (leased && null != current) {
+            allocator.releaseLease(current);
+        }
+        SnowflakeZkFactory.lease = renewed;
+    }
+
+    /**
+     * 初始化连接,创建Snowflake根节点
+     */
+    private static void initZkClient() {
+        buildZkClient(defaultRetryPolicy());
+        try {
+            createRoot(client);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 默认的重试策略,连接断开期间持续重试
+     */
+    private static RetryPolicy defaultRetryPolicy() {
+        return new ExponentialBackoffRetry(RETRY_BASE_SLEEP_MS, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 创建并启动与SnowflakeZkFactory配置相同(超时、权限控制与重试策略)的客户端,不等待连接建立
+     * 用于不经过SnowflakeZkFactory的单例,自行创建ZkWorkerIdAllocator的场景,如每个Spring容器一个实例;客户端由调用者关闭
+     *
+     * @param zkUrl     zookeeperURL
+     * @param authority authority,可以为null
+     * @return 已启动的Curator客户端
+     */
+    public static CuratorFramework newClient(String zkUrl, String authority) {
+        if (null == zkUrl) {
+            throw new IllegalArgumentException("zkUrl cannot be null!");
+        }
+        if (zkUrl.startsWith("zookeeper://")) {
+            zkUrl = zkUrl.substring("zookeeper://".length());
+        }
+        return newClient(zkUrl, authority, defaultRetryPolicy());
+    }
+
+    /**
+     * 创建并启动客户端,不等待连接建立
+     *
+     * @param retryPolicy 重试策略
+     */
+    private static void buildZkClient(RetryPolicy retryPolicy) {
+        client = newClient(zkUrl, authority, retryPolicy);
+    }
+
+    private static CuratorFramework newClient(String zkUrl, final String authority, RetryPolicy retryPolicy) {
+        //创建client
+        CuratorFrameworkFactory.Builder builder = CuratorFrameworkFactory.builder()
+                .connectString(zkUrl)
+                .sessionTimeoutMs(SESSION_TIMEOUT_MS)
+                .connectionTimeoutMs(CONNECTION_TIMEOUT_MS)
+                .canBeReadOnly(false)
+                .retryPolicy(retryPolicy)
+                .namespace(null)
+                .defaultData(null);
+
+        //添加权限控制
+        if (authority != null && authority.length() > 0) {
+            ACLProvider aclProvider = new ACLProvider() {
+                private List<ACL> acls;
+
+                @Override
+                public List<ACL> getDefaultAcl() {
+                    if (acls == null) {
+                        //digest的ID为username:base64(sha1(username:password)),否则创建者本身也无法读取节点
+                        ArrayList<ACL> acls = new ArrayList<>();
+                        try {
+                            acls.add(new ACL(ZooDefs.Perms.ALL, new Id("digest", DigestAuthenticationProvider.generateDigest(authority))));
+                        } catch (NoSuchAlgorithmException e) {
+                            throw new IllegalStateException(e.getMessage(), e);
+                        }
+                        this.acls = acls;
+                    }
+                    return acls;
+                }
+
+                @Override
+                public List<ACL> getAclForPath(String path) {
+                    return getDefaultAcl();
+                }
+            };
+            builder = builder
+                    .aclProvider(aclProvider)
+                    .authorization("digest", authority.getBytes());
+        }
+        CuratorFramework client = builder.build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * 创建Snowflake根节点
+     */
+    private static void createRoot(CuratorFramework client) throws Exception {
+        try {
+            if (null == client.checkExists().forPath(SNOWFLAKEU_URL)) {
+                client.create().withMode(CreateMode.PERSISTENT).forPath(SNOWFLAKEU_URL);
+            }
+        } catch (KeeperException.NodeExistsException ignored) {
+        }
+    }
+
+}
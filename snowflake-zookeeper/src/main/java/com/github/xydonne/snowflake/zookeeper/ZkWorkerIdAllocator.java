@@ -0,0 +1,887 @@
+package com.github.xydonne.snowflake.zookeeper;
+
+import com.github.xydonne.snowflake.IdLease;
+import com.github.xydonne.snowflake.WorkerIdAllocator;
+import com.github.xydonne.snowflake.WorkerIdLayout;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.transaction.CuratorTransactionBridge;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 基于Zookeeper的节点ID分配
+ * 节点ID注册为App节点下的临时节点,各节点ID的释放时间记录在隔离账本中,隔离时间内不会被重新分配
+ * 区分区域时,在本区域的App节点下分配区域内节点ID,返回组合了区域标识的节点ID
+ *
+ * @author Donney
+ **/
+public class ZkWorkerIdAllocator implements WorkerIdAllocator {
+
+    //向Zookeeper注册的根节点
+    private static final String SNOWFLAKEU_URL = "/snowflake";
+
+    //记录各节点ID释放时间的隔离账本根节点
+    private static final String QUARANTINE_URL = "/snowflake-quarantine";
+
+    //区域节点前缀,区分区域时App节点为/snowflake/region-{regionId}{appUrl}
+    private static final String REGION_PREFIX = "/region-";
+
+    //账本中节点ID从未被使用的标记
+    private static final long SLOT_UNUSED = 0L;
+
+    //账本中节点ID正在被使用的标记
+    private static final long SLOT_HELD = -1L;
+
+    //Curator客户端
+    private final CuratorFramework client;
+
+    //App节点路径
+    private final String appPath;
+
+    //隔离账本节点路径
+    private final String ledgerPath;
+
+    //节点标识布局
+    private final WorkerIdLayout layout;
+
+    //区域标识
+    private final long regionId;
+
+    //区域内节点ID数量,不区分区域时为1024
+    private final int workerCount;
+
+    //已释放节点ID的隔离时间
+    private final long quarantineMarginMs;
+
+    //是否获取远程时间并同步
+    private boolean timeSync;
+
+    //最近一次注册时Zookeeper时间与本机时间的偏差(单位:毫秒)
+    private volatile long clockSkew;
+
+    //已分配的区域内节点ID与其监听
+    private final Map<Long, TreeCache> treeCaches = new HashMap<>();
+
+    //已分配的区域内节点ID与其节点创建时间,isHeld读取时无需获取锁
+    private final Map<Long, Long> pathCreatedTimes = new ConcurrentHashMap<>();
+
+    //租约中的区域内节点ID与其节点创建时间
+    private final Map<Long, Long> leases = new HashMap<>();
+
+    //异步注册完成,尚未被acquire取走的区域内节点ID与其节点创建时间
+    private final Map<Long, Long> reserved = new LinkedHashMap<>();
+
+    /**
+     * 构造方法,创建App节点与隔离账本节点
+     *
+     * @param client             已启动的Curator客户端
+     * @param appUrl             appName
+     * @param quarantineMarginMs 已释放节点ID的隔离时间(单位:毫秒),需大于各机器之间可能的时钟偏差
+     * @param regionBits         区域标识位数(0-10), 0表示不区分区域
+     * @param regionId           区域标识
+     * @param timeSync           首次注册时是否把系统时间设置为节点创建时间
+     */
+    public ZkWorkerIdAllocator(CuratorFramework client, String appUrl, long quarantineMarginMs, int regionBits, long regionId, boolean timeSync) {
+        this(client, appUrl, quarantineMarginMs, regionBits, regionId, timeSync, true);
+    }
+
+    private ZkWorkerIdAllocator(CuratorFramework client, String appUrl, long quarantineMarginMs, int regionBits, long regionId, boolean timeSync, boolean createNodes) {
+        if (quarantineMarginMs < 0) {
+            throw new IllegalArgumentException("quarantineMarginMs cannot be less than 0!");
+        }
+        this.layout = new WorkerIdLayout(regionBits);
+        if (regionId > layout.getMaxRegionId() || regionId < 0) {
+            throw new IllegalArgumentException(String.format("regionId can't be greater than %d or less than 0", layout.getMaxRegionId()));
+        }
+        this.client = client;
+        this.quarantineMarginMs = quarantineMarginMs;
+        this.regionId = regionId;
+        this.timeSync = timeSync;
+        this.workerCount = (int) layout.getMaxLocalWorkerId() + 1;
+        String regionUrl = regionBits == 0 ? "" : REGION_PREFIX + regionId;
+        this.appPath = SNOWFLAKEU_URL + regionUrl + appUrl;
+        this.ledgerPath = QUARANTINE_URL + regionUrl + appUrl;
+
+        if (!createNodes) {
+            return;
+        }
+        if (null == checkExists(appPath)) {
+            createPersistent(appPath);
+        }
+        if (null == checkExists(ledgerPath)) {
+            createLedger(ledgerPath);
+        }
+    }
+
+    /**
+     * 异步创建分配器,App节点与隔离账本节点以后台操作创建,不阻塞调用线程
+     *
+     * @param client             已启动的Curator客户端
+     * @param appUrl             appName
+     * @param quarantineMarginMs 已释放节点ID的隔离时间(单位:毫秒),需大于各机器之间可能的时钟偏差
+     * @param regionBits         区域标识位数(0-10), 0表示不区分区域
+     * @param regionId           区域标识
+     * @param timeSync           首次注册时是否把系统时间设置为节点创建时间
+     * @param executor           执行后台操作回调的线程
+     * @return 节点创建完成后得到分配器
+     */
+    public static CompletableFuture<ZkWorkerIdAllocator> createAsync(CuratorFramework client, String appUrl, long quarantineMarginMs, int regionBits, long regionId, boolean timeSync,
+                                                                     final Executor executor) {
+        final ZkWorkerIdAllocator allocator = new ZkWorkerIdAllocator(client, appUrl, quarantineMarginMs, regionBits, regionId, timeSync, false);
+        final CompletableFuture<ZkWorkerIdAllocator> future = new CompletableFuture<>();
+        //先创建App节点,再创建账本节点,节点已存在视为成功
+        BackgroundCallback callback = new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) {
+                int resultCode = event.getResultCode();
+                if (resultCode != KeeperException.Code.OK.intValue() && resultCode != KeeperException.Code.NODEEXISTS.intValue()) {
+                    future.completeExceptionally(KeeperException.create(KeeperException.Code.get(resultCode), event.getPath()));
+                } else if (allocator.appPath.equals(event.getPath())) {
+                    createInBackground(client, allocator.ledgerPath, allocator.encodeLedger(new long[allocator.workerCount]), this, executor, future);
+                } else {
+                    future.complete(allocator);
+                }
+            }
+        };
+        createInBackground(client, allocator.appPath, new byte[0], callback, executor, future);
+        return future;
+    }
+
+    public WorkerIdLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 获取最近一次注册时Zookeeper时间与本机时间的偏差,正数表示本机时间落后
+     *
+     * @return 时间偏差(单位:毫秒)
+     */
+    public long getClockSkew() {
+        return clockSkew;
+    }
+
+    /**
+     * 分配一个空余的节点ID,有异步注册完成的节点ID时直接使用,不访问Zookeeper
+     */
+    @Override
+    public synchronized long acquire(Listener listener) {
+        long localWorkerId;
+        long pathCreatedTime;
+        Iterator<Map.Entry<Long, Long>> iterator = reserved.entrySet().iterator();
+        if (iterator.hasNext()) {
+            Map.Entry<Long, Long> reservation = iterator.next();
+            iterator.remove();
+            localWorkerId = reservation.getKey();
+            pathCreatedTime = reservation.getValue();
+        } else {
+            localWorkerId = doRegister(System.currentTimeMillis(), SLOT_HELD, null);
+            //在监听启动前获取节点创建时间,避免监听的初始事件误判为节点被其他app注册
+            pathCreatedTime = checkExists(appPath + "/" + String.valueOf(localWorkerId)).getCtime();
+        }
+        watch(localWorkerId, pathCreatedTime, listener);
+        return layout.workerId(regionId, localWorkerId);
+    }
+
+    /**
+     * 以后台操作异步注册一个空余的节点ID,不阻塞调用线程;注册完成的节点ID由下一次acquire直接返回
+     * 与acquire相同,只根据账本选择节点ID,候选节点ID均不可用时回收持有者已退出的节点ID,并以注册失败结束
+     *
+     * @param executor 执行后台操作回调的线程
+     * @return 注册完成后得到节点ID
+     */
+    public CompletableFuture<Long> reserveAsync(Executor executor) {
+        Reservation reservation = new Reservation(executor);
+        reservation.readLastWorkerId();
+        return reservation.future;
+    }
+
+    /**
+     * 租用一个节点ID从当前时间开始durationMs毫秒的时间窗口
+     * 账本中把窗口结束时间记为该节点ID的释放时间,因此无论租约是否被释放,窗口结束时间加上隔离时间之前都不会被其他生成器使用
+     * 租用期间在App节点下创建临时节点,节点数据为窗口的开始与结束时间
+     *
+     * @param durationMs 时间窗口长度(单位:毫秒)
+     * @param epoch      时间起始标记点
+     * @return 租约
+     */
+    public synchronized IdLease lease(long durationMs, long epoch) {
+        if (durationMs < 1) {
+            throw new IllegalArgumentException("durationMs cannot be less than 1!");
+        }
+        long start = System.currentTimeMillis();
+        long end = start + durationMs;
+        long localWorkerId = doRegister(start, end, (start + "-" + end).getBytes());
+        leases.put(localWorkerId, checkExists(appPath + "/" + String.valueOf(localWorkerId)).getCtime());
+        return new IdLease(layout.workerId(regionId, localWorkerId), epoch, start, end);
+    }
+
+    /**
+     * 延长租约的时间窗口至当前时间之后durationMs毫秒,节点ID与窗口开始时间不变
+     * 在同一个事务中更新账本中的窗口结束时间与节点数据,不占用新的节点ID
+     *
+     * @param lease      租约
+     * @param durationMs 从当前时间起的窗口长度(单位:毫秒)
+     * @return 延长后的租约
+     */
+    public synchronized IdLease renewLease(IdLease lease, long durationMs) {
+        if (durationMs < 1) {
+            throw new IllegalArgumentException("durationMs cannot be less than 1!");
+        }
+        long localWorkerId = lease.getWorkerId() & layout.getMaxLocalWorkerId();
+        Long pathCreatedTime = leases.get(localWorkerId);
+        String path = appPath + "/" + String.valueOf(localWorkerId);
+        Stat stat = checkExists(path);
+        if (null == pathCreatedTime || null == stat || stat.getCtime() != pathCreatedTime) {
+            leases.remove(localWorkerId);
+            throw new IllegalStateException("The lease " + lease + " is not held by this allocator!");
+        }
+        long end = Math.max(System.currentTimeMillis() + durationMs, lease.getEndTimestamp());
+        while (true) {
+            Stat ledgerStat = new Stat();
+            long[] ledger = readLedger(ledgerStat);
+            ledger[(int) localWorkerId] = end;
+            try {
+                client.inTransaction().setData().withVersion(ledgerStat.getVersion()).forPath(ledgerPath, encodeLedger(ledger))
+                        .and().setData().forPath(path, (lease.getStartTimestamp() + "-" + end).getBytes())
+                        .and().commit();
+                return new IdLease(lease.getWorkerId(), lease.getEpoch(), lease.getStartTimestamp(), end);
+            } catch (KeeperException.BadVersionException e) {
+                //账本已被其他节点修改,重新读取
+            } catch (KeeperException.NoNodeException e) {
+                leases.remove(localWorkerId);
+                throw new IllegalStateException("The lease " + lease + " is not held by this allocator!", e);
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 释放租约,删除临时节点;节点ID在窗口结束时间加上隔离时间之后才能被重新分配
+     *
+     * @param lease 租约
+     */
+    public synchronized void releaseLease(IdLease lease) {
+        long localWorkerId = lease.getWorkerId() & layout.getMaxLocalWorkerId();
+        Long pathCreatedTime = leases.remove(localWorkerId);
+        if (null == pathCreatedTime) {
+            return;
+        }
+        String path = appPath + "/" + String.valueOf(localWorkerId);
+        try {
+            Stat stat = client.checkExists().forPath(path);
+            if (null != stat && stat.getCtime() == pathCreatedTime) {
+                client.delete().withVersion(stat.getVersion()).forPath(path);
+            }
+        } catch (KeeperException.NoNodeException | KeeperException.BadVersionException ignored) {
+            //节点已不存在或已被其他进程重新创建
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void release(long workerId, long lastTimestamp) {
+        long localWorkerId = workerId & layout.getMaxLocalWorkerId();
+        TreeCache treeCache = treeCaches.remove(localWorkerId);
+        if (null != treeCache) {
+            treeCache.close();
+        }
+        //节点ID已丢失时节点可能已被其他进程重新创建,只记录释放时间
+        boolean held = null != pathCreatedTimes.remove(localWorkerId);
+        held = null != reserved.remove(localWorkerId) || held;
+        release(localWorkerId, lastTimestamp, held);
+    }
+
+    /**
+     * 根据客户端的连接状态与节点监听维护的持有状态判断,不访问Zookeeper,可用于健康检查与指标
+     * 节点被删除或被其他进程重新创建时,监听会移除其持有状态
+     */
+    @Override
+    public boolean isHeld(long workerId) {
+        return pathCreatedTimes.containsKey(workerId & layout.getMaxLocalWorkerId()) && client.getZookeeperClient().isConnected();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (TreeCache each : treeCaches.values()) {
+            each.close();
+        }
+        treeCaches.clear();
+        pathCreatedTimes.clear();
+        leases.clear();
+        reserved.clear();
+    }
+
+    /**
+     * 根据隔离账本寻找空余ID节点(区域内),并注册
+     * 优先选择最早释放(或从未使用)的节点ID,从未使用的节点ID按最后创建节点计数+1开始循环选择
+     * 仍处于隔离时间内的节点ID不会被选择;只根据账本选择,不获取App节点的子节点列表,候选节点已存在时在账本中标记为使用中并尝试下一个
+     *
+     * @param now         当前时间,释放时间加上隔离时间早于此时间的节点ID才可用
+     * @param ledgerValue 注册成功后账本中记录的值,使用中的标记或租约的窗口结束时间
+     * @param nodeData    节点数据,可以为null
+     * @return 区域内节点ID
+     */
+    private long doRegister(long now, long ledgerValue, byte[] nodeData) {
+        //获取最后创建节点计数与当前注册节点数量
+        Stat appStat = new Stat();
+        int start = firstCandidate(getData(appPath, appStat), appStat);
+
+        while (true) {
+            Stat ledgerStat = new Stat();
+            long[] ledger = readLedger(ledgerStat);
+            long[] candidates = candidates(ledger, start, now);
+            boolean ledgerChanged = false;
+            for (long candidate : candidates) {
+                ledger[(int) candidate] = ledgerValue;
+                String path = appPath + "/" + String.valueOf(candidate);
+                try {
+                    //创建节点,更新节点计数与账本,账本版本不一致时重新读取账本
+                    CuratorTransactionFinal transaction = client.inTransaction().setData().withVersion(ledgerStat.getVersion()).forPath(ledgerPath, encodeLedger(ledger)).and();
+                    CuratorTransactionBridge created = null == nodeData
+                            ? transaction.create().withMode(CreateMode.EPHEMERAL).forPath(path)
+                            : transaction.create().withMode(CreateMode.EPHEMERAL).forPath(path, nodeData);
+                    created.and().setData().forPath(appPath, Long.toString(candidate).getBytes())
+                            .and().commit();
+                    return candidate;
+                } catch (KeeperException.NodeExistsException e) {
+                    //节点ID被未记录在账本中的节点占用,随下一个候选节点ID的注册一同写入账本
+                    ledger[(int) candidate] = SLOT_HELD;
+                } catch (KeeperException.BadVersionException e) {
+                    ledgerChanged = true;
+                    break;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+            if (!ledgerChanged) {
+                reclaimDeadSlots(ledger, ledgerStat.getVersion());
+                throw exhausted(ledger);
+            }
+        }
+    }
+
+    /**
+     * 根据App节点数据中的最后创建节点计数,返回从未使用的节点ID的循环起点
+     *
+     * @param data    App节点数据
+     * @param appStat App节点状态
+     * @return 循环起点
+     */
+    private int firstCandidate(byte[] data, Stat appStat) {
+        Long nodeNum = null;
+        try {
+            nodeNum = Long.valueOf(new String(data));
+        } catch (NumberFormatException ignored) {
+        }
+        if (null != nodeNum && (nodeNum < 0 || nodeNum >= workerCount)) {
+            //如果最后创建节点计数为其他数值则报错
+            throw new IllegalStateException("There is something wrong with zookeeper snowflake node. The last workerID is " + nodeNum + ".");
+        }
+        if (appStat.getNumChildren() >= workerCount) {
+            throw new IllegalStateException("The snowflake node is full! The max node amount is " + workerCount + ".");
+        }
+        return null == nodeNum ? 0 : (int) ((nodeNum + 1) % workerCount);
+    }
+
+    /**
+     * 候选节点ID均不可用时的异常,存在隔离中的节点ID时给出最早可被重新分配的时间
+     */
+    private IllegalStateException exhausted(long[] ledger) {
+        long quarantinedUntil = quarantinedUntil(ledger);
+        if (quarantinedUntil > 0) {
+            return new IllegalStateException(String.format("All free snowflake nodes are quarantined until %tF %<tT.%<tL! Please retry after %d milliseconds.",
+                    quarantinedUntil, Math.max(quarantinedUntil - System.currentTimeMillis(), 0L)));
+        }
+        return new IllegalStateException("The snowflake node is full! The max node amount is " + workerCount + ".");
+    }
+
+    /**
+     * 按照优先级返回可用的节点ID: 释放时间早的优先,释放时间相同时按从start开始的循环顺序
+     */
+    private long[] candidates(long[] ledger, int start, long now) {
+        long[] keys = new long[workerCount];
+        int size = 0;
+        for (int distance = 0; distance < workerCount; distance++) {
+            int workerId = (start + distance) % workerCount;
+            long releasedAt = ledger[workerId];
+            if (isFree(releasedAt, now)) {
+                //高位为释放时间,低位为循环距离,排序后即为优先级顺序
+                keys[size++] = releasedAt << 10 | distance;
+            }
+        }
+        Arrays.sort(keys, 0, size);
+        long[] candidates = new long[size];
+        for (int i = 0; i < size; i++) {
+            candidates[i] = (start + (keys[i] & (workerCount - 1))) % workerCount;
+        }
+        return candidates;
+    }
+
+    /**
+     * 账本中的节点ID是否可用: 从未使用,或释放时间加上隔离时间早于当前时间
+     */
+    private boolean isFree(long releasedAt, long now) {
+        return releasedAt == SLOT_UNUSED || (releasedAt > 0 && releasedAt + quarantineMarginMs < now);
+    }
+
+    /**
+     * 返回隔离中的节点ID最早可被重新分配的时间
+     *
+     * @return 最早可被重新分配的时间,没有隔离中的节点ID时返回-1
+     */
+    private long quarantinedUntil(long[] ledger) {
+        long until = -1L;
+        for (long releasedAt : ledger) {
+            if (releasedAt > 0 && (until < 0 || releasedAt + quarantineMarginMs < until)) {
+                until = releasedAt + quarantineMarginMs;
+            }
+        }
+        return until;
+    }
+
+    /**
+     * 账本中标记为使用中但节点已不存在的节点ID(持有者异常退出),以当前时间记为释放时间,进入隔离
+     * 只对标记为使用中的节点ID逐个检查其节点是否存在
+     *
+     * @return 是否有节点ID被回收
+     */
+    private boolean reclaimDeadSlots(long[] ledger, int version) {
+        boolean reclaimed = false;
+        long now = System.currentTimeMillis();
+        for (int workerId = 0; workerId < workerCount; workerId++) {
+            if (ledger[workerId] == SLOT_HELD && null == checkExists(appPath + "/" + String.valueOf(workerId))) {
+                ledger[workerId] = now;
+                reclaimed = true;
+            }
+        }
+        if (reclaimed) {
+            try {
+                client.setData().withVersion(version).forPath(ledgerPath, encodeLedger(ledger));
+            } catch (KeeperException.BadVersionException ignored) {
+                //账本已被其他节点修改,由下次注册重新回收
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * 在账本中记录节点ID的释放时间,使其进入隔离,并删除节点
+     *
+     * @param localWorkerId 区域内节点ID
+     * @param lastTimestamp 节点ID最后生成ID的时间
+     * @param deleteNode    是否同时删除节点
+     */
+    private void release(long localWorkerId, long lastTimestamp, boolean deleteNode) {
+        final String path = appPath + "/" + String.valueOf(localWorkerId);
+        long releasedAt = Math.max(lastTimestamp, System.currentTimeMillis());
+        while (true) {
+            Stat ledgerStat = new Stat();
+            long[] ledger = readLedger(ledgerStat);
+            ledger[(int) localWorkerId] = releasedAt;
+            try {
+                if (deleteNode) {
+                    client.inTransaction().setData().withVersion(ledgerStat.getVersion()).forPath(ledgerPath, encodeLedger(ledger))
+                            .and().delete().forPath(path)
+                            .and().commit();
+                } else {
+                    client.setData().withVersion(ledgerStat.getVersion()).forPath(ledgerPath, encodeLedger(ledger));
+                }
+                return;
+            } catch (KeeperException.BadVersionException e) {
+                //账本已被其他节点修改,重新读取
+            } catch (KeeperException.NoNodeException e) {
+                //节点已不存在,只记录释放时间
+                deleteNode = false;
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 注册节点的监听,当节点数据发生改变时,检测节点创建时间,如果与注册时的节点创建时间不同,说明节点已丢失
+     *
+     * @param pathCreatedTime 注册时的节点创建时间
+     */
+    private void watch(final long localWorkerId, final long pathCreatedTime, final Listener listener) {
+        final String path = appPath + "/" + String.valueOf(localWorkerId);
+        clockSkew = pathCreatedTime - System.currentTimeMillis();
+        pathCreatedTimes.put(localWorkerId, pathCreatedTime);
+        try {
+            final TreeCache treeCache = new TreeCache(client, path);
+            treeCaches.put(localWorkerId, treeCache);
+            treeCache.getListenable().addListener(
+                    new TreeCacheListener() {
+                        @Override
+                        public void childEvent(CuratorFramework curatorFramework, TreeCacheEvent treeCacheEvent) throws Exception {
+                            long pathTime;
+                            try {
+                                pathTime = checkExists(path).getCtime();
+                            } catch (Exception e) {
+                                pathTime = 0;
+                            }
+                            if (pathCreatedTime != pathTime) {
+                                synchronized (ZkWorkerIdAllocator.this) {
+                                    if (treeCaches.get(localWorkerId) != treeCache) {
+                                        return;
+                                    }
+                                    treeCaches.remove(localWorkerId);
+                                    pathCreatedTimes.remove(localWorkerId);
+                                }
+                                //关闭监听会中断当前事件线程,需在回调完成后关闭
+                                try {
+                                    if (null != listener) {
+                                        listener.workerIdLost(layout.workerId(regionId, localWorkerId));
+                                    }
+                                } finally {
+                                    treeCache.close();
+                                }
+                            }
+                        }
+                    }
+            );
+            treeCache.start();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+
+        //获取节点创建时间,并以把此时间设置为当前系统时间
+        if (timeSync) {
+            updateSystemTime(pathCreatedTime);
+            timeSync = false;
+        }
+    }
+
+    private long[] readLedger(Stat stat) {
+        return decodeLedger(getData(ledgerPath, stat));
+    }
+
+    private long[] decodeLedger(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long[] ledger = new long[workerCount];
+        for (int i = 0; i < workerCount && buffer.remaining() >= 8; i++) {
+            ledger[i] = buffer.getLong();
+        }
+        return ledger;
+    }
+
+    private byte[] encodeLedger(long[] ledger) {
+        ByteBuffer buffer = ByteBuffer.allocate(workerCount * 8);
+        for (long each : ledger) {
+            buffer.putLong(each);
+        }
+        return buffer.array();
+    }
+
+    /***
+     * 修改当前系统的时间
+     */
+    private static void updateSystemTime(long date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(date);
+        String strDate = calendar.get(Calendar.YEAR) + "-" + (calendar.get(Calendar.MONTH) + 1) + "-" + calendar.get(Calendar.DAY_OF_MONTH);
+        String strTime = calendar.get(Calendar.HOUR_OF_DAY) + ":" + calendar.get(Calendar.MINUTE) + ":" + calendar.get(Calendar.SECOND);
+        switch (osType()) {
+            case "linux":
+                try {
+                    Runtime.getRuntime().exec("sudo date -s " + strDate);
+                    Runtime.getRuntime().exec("sudo date -s " + strTime);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Update system time failed!", e);
+                }
+                break;
+            case "windows":
+//                Windows系统需要获取管理员权限才能修改时间,不同语言不同版本的Windows设置时间参数的格式也不同
+//                所以暂时取消Windows的时间设置功能
+//                Runtime.getRuntime().exec("cmd /c date " + strDate);
+//                Runtime.getRuntime().exec("cmd /c time  " + strTime);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported OS type!");
+        }
+    }
+
+    /**
+     * 返回当前操作系统类型
+     */
+    private static String osType() {
+        if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+            return "windows";
+        }
+        return "linux";
+    }
+
+    private void createPersistent(String path) {
+        try {
+            client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path);
+        } catch (KeeperException.NodeExistsException ignored) {
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void createLedger(String path) {
+        try {
+            client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path, encodeLedger(new long[workerCount]));
+        } catch (KeeperException.NodeExistsException ignored) {
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private byte[] getData(String path, Stat stat) {
+        try {
+            return client.getData().storingStatIn(stat).forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 以后台操作创建持久节点,创建失败时以异常结束future
+     */
+    private static void createInBackground(CuratorFramework client, String path, byte[] data, BackgroundCallback callback, Executor executor, CompletableFuture<?> future) {
+        try {
+            client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).inBackground(callback, executor).forPath(path, data);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private Stat checkExists(String path) {
+        try {
+            return client.checkExists().forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 一次异步注册,各步骤均为后台操作,回调在指定的线程中依次执行:
+     * 读取最后创建节点计数 -> 读取App节点的ACL -> 读取账本 -> 依次以事务注册候选节点ID -> 读取节点创建时间
+     * 候选节点ID均不可用时,逐个检查标记为使用中的节点ID的节点是否存在,回收后以注册失败结束
+     */
+    private final class Reservation implements BackgroundCallback {
+
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private final Executor executor;
+
+        //从未使用的节点ID的循环起点
+        private int start;
+
+        //新建的节点使用App节点的ACL
+        private List<ACL> acls;
+
+        private long[] ledger;
+
+        private int ledgerVersion;
+
+        private long[] candidates;
+
+        //下一个尝试的候选节点ID的下标
+        private int next;
+
+        //事务已提交的区域内节点ID
+        private long registered = -1L;
+
+        //正在回收持有者已退出的节点ID
+        private boolean reclaiming = false;
+
+        //尚未返回结果的节点检查数量
+        private int pendingChecks;
+
+        //是否有节点ID被回收
+        private boolean reclaimed = false;
+
+        Reservation(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void processResult(CuratorFramework client, CuratorEvent event) {
+            try {
+                int resultCode = event.getResultCode();
+                switch (event.getType()) {
+                    case GET_DATA:
+                        checkResult(resultCode, event.getPath());
+                        if (appPath.equals(event.getPath())) {
+                            start = firstCandidate(event.getData(), event.getStat());
+                            client.getACL().inBackground(this, executor).forPath(appPath);
+                        } else {
+                            ledger = decodeLedger(event.getData());
+                            ledgerVersion = event.getStat().getVersion();
+                            candidates = candidates(ledger, start, System.currentTimeMillis());
+                            next = 0;
+                            tryNext();
+                        }
+                        break;
+                    case GET_ACL:
+                        checkResult(resultCode, event.getPath());
+                        acls = event.getACLList();
+                        readLedger();
+                        break;
+                    case EXISTS:
+                        if (reclaiming) {
+                            checked(resultCode, event.getPath());
+                        } else {
+                            checkResult(resultCode, event.getPath());
+                            reserved(event.getStat());
+                        }
+                        break;
+                    case SET_DATA:
+                        //回收写入账本失败时(账本已被其他节点修改)由下次注册重新回收
+                        future.completeExceptionally(exhausted(ledger));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected event " + event.getType() + "!");
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        void readLastWorkerId() {
+            try {
+                client.getData().inBackground(this, executor).forPath(appPath);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void readLedger() throws Exception {
+            client.getData().inBackground(this, executor).forPath(ledgerPath);
+        }
+
+        /**
+         * 以事务创建节点,更新节点计数与账本;Curator的事务不支持后台操作,因此直接使用Zookeeper的异步事务
+         */
+        private void tryNext() throws Exception {
+            if (next >= candidates.length) {
+                reclaim();
+                return;
+            }
+            final long candidate = candidates[next++];
+            ledger[(int) candidate] = SLOT_HELD;
+            String namespace = client.getNamespace();
+            List<Op> ops = Arrays.asList(
+                    Op.setData(ZKPaths.fixForNamespace(namespace, ledgerPath), encodeLedger(ledger), ledgerVersion),
+                    Op.create(ZKPaths.fixForNamespace(namespace, appPath + "/" + String.valueOf(candidate)), new byte[0], acls, CreateMode.EPHEMERAL),
+                    Op.setData(ZKPaths.fixForNamespace(namespace, appPath), Long.toString(candidate).getBytes(), -1));
+            client.getZookeeperClient().getZooKeeper().multi(ops, new AsyncCallback.MultiCallback() {
+                @Override
+                public void processResult(final int resultCode, String path, Object ctx, List<OpResult> opResults) {
+                    //Zookeeper的回调在其事件线程中执行,转到指定的线程
+                    try {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                committed(candidate, resultCode);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            }, null);
+        }
+
+        private synchronized void committed(long candidate, int resultCode) {
+            try {
+                if (resultCode == KeeperException.Code.OK.intValue()) {
+                    registered = candidate;
+                    client.checkExists().inBackground(this, executor).forPath(appPath + "/" + String.valueOf(candidate));
+                } else if (resultCode == KeeperException.Code.NODEEXISTS.intValue()) {
+                    //节点ID被未记录在账本中的节点占用,已标记为使用中,随下一个候选节点ID的注册一同写入账本
+                    tryNext();
+                } else if (resultCode == KeeperException.Code.BADVERSION.intValue()) {
+                    //账本已被其他节点修改,重新读取
+                    readLedger();
+                } else {
+                    throw KeeperException.create(KeeperException.Code.get(resultCode), appPath + "/" + String.valueOf(candidate));
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void reserved(Stat stat) {
+            synchronized (ZkWorkerIdAllocator.this) {
+                reserved.put(registered, stat.getCtime());
+            }
+            future.complete(layout.workerId(regionId, registered));
+        }
+
+        private void reclaim() throws Exception {
+            reclaiming = true;
+            for (long releasedAt : ledger) {
+                if (releasedAt == SLOT_HELD) {
+                    pendingChecks++;
+                }
+            }
+            if (pendingChecks == 0) {
+                future.completeExceptionally(exhausted(ledger));
+                return;
+            }
+            for (int workerId = 0; workerId < workerCount; workerId++) {
+                if (ledger[workerId] == SLOT_HELD) {
+                    client.checkExists().inBackground(this, executor).forPath(appPath + "/" + String.valueOf(workerId));
+                }
+            }
+        }
+
+        private void checked(int resultCode, String path) throws Exception {
+            if (resultCode == KeeperException.Code.NONODE.intValue()) {
+                ledger[Integer.parseInt(ZKPaths.getNodeFromPath(path))] = System.currentTimeMillis();
+                reclaimed = true;
+            }
+            if (--pendingChecks > 0) {
+                return;
+            }
+            if (reclaimed) {
+                client.setData().withVersion(ledgerVersion).inBackground(this, executor).forPath(ledgerPath, encodeLedger(ledger));
+            } else {
+                future.completeExceptionally(exhausted(ledger));
+            }
+        }
+
+        private void checkResult(int resultCode, String path) throws KeeperException {
+            if (resultCode != KeeperException.Code.OK.intValue()) {
+                throw KeeperException.create(KeeperException.Code.get(resultCode), path);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,720 @@
+package com.github.xydonne.snowflake.test;
+
+import com.github.xydonne.snowflake.ElasticSnowflake;
+import com.github.xydonne.snowflake.IdLease;
+import com.github.xydonne.snowflake.Snowflake;
+import com.github.xydonne.snowflake.SnowflakePool;
+import com.github.xydonne.snowflake.zookeeper.SnowflakeZkFactory;
+import com.github.xydonne.snowflake.zookeeper.ZkWorkerIdAllocator;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.BaseClassForTests;
+import org.apache.curator.test.Timing;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.server.auth.DigestAuthenticationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Donney
+ **/
+public class SnowflakeZkFactoryTest extends BaseClassForTests {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SNOWFLAKEU_URL = "/snowflake";
+
+    private static final String QUARANTINE_URL = "/snowflake-quarantine";
+
+    private static String appUrl = "/defaultapp";
+
+    private static CuratorFramework client;
+
+    @Before
+    public void before() {
+        try {
+            super.setup();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        Timing timing = new Timing();
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), timing.session(), 1, new RetryNTimes(1000, 1000));
+        client.start();
+        if (null == checkExists(SNOWFLAKEU_URL)) {
+            createPersistent(SNOWFLAKEU_URL);
+        }
+        if (null == checkExists(SNOWFLAKEU_URL + appUrl)) {
+            createPersistent(SNOWFLAKEU_URL + appUrl);
+        }
+    }
+
+    @After
+    public void after() {
+        SnowflakeZkFactory.close();
+        if (null != checkExists(SNOWFLAKEU_URL + appUrl)) {
+            deleteNode(SNOWFLAKEU_URL + appUrl);
+        }
+        client.close();
+    }
+
+    /**
+     * 测试注册节点
+     */
+    @Test
+    public void testBuild() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), notNullValue());
+
+        assertThat("Zookeeper Sequence Record is not equal!", Long.valueOf(new String(getData(SNOWFLAKEU_URL + appUrl))), equalTo(0L));
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(0L));
+
+        assertThat("GeneratedID is not equal!", SnowflakeZkFactory.getSnowflake().getId(), equalTo((SnowflakeZkFactory.getSnowflake().getLastTimestamp() << 22) + (SnowflakeZkFactory.getSnowflake().getWorkerId() << 12)));
+
+
+    }
+
+    /**
+     * 测试权限
+     */
+    @Test
+    public void authTest() {
+
+        setAcl(SNOWFLAKEU_URL + appUrl, "digest", "admin:admin123");
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl, "admin:admin123");
+
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), notNullValue());
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(0L));
+
+        assertThat("GeneratedID is not equal!", SnowflakeZkFactory.getSnowflake().getId(), equalTo((SnowflakeZkFactory.getSnowflake().getLastTimestamp() << 22) + (SnowflakeZkFactory.getSnowflake().getWorkerId() << 12)));
+
+    }
+
+    /**
+     * 测试当节点被移除,重新注册节点
+     */
+    @Test
+    public void reRegisterTest() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), notNullValue());
+
+        assertThat("Zookeeper Sequence Record is not equal!", Long.valueOf(new String(getData(SNOWFLAKEU_URL + appUrl))), equalTo(0L));
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(0L));
+
+        assertThat("GeneratedID is not equal!", SnowflakeZkFactory.getSnowflake().getId(), equalTo((SnowflakeZkFactory.getSnowflake().getLastTimestamp() << 22) + (SnowflakeZkFactory.getSnowflake().getWorkerId() << 12)));
+
+        deleteNode(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L));
+
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        assertThat("SnowflakeNode is not closed!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), equalTo(null));
+
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), notNullValue());
+
+        assertThat("Zookeeper Sequence Record is not equal!", Long.valueOf(new String(getData(SNOWFLAKEU_URL + appUrl))), equalTo(1L));
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(1L));
+
+        assertThat("GeneratedID is not equal!", SnowflakeZkFactory.getSnowflake().getId(), equalTo((SnowflakeZkFactory.getSnowflake().getLastTimestamp() << 22) + (SnowflakeZkFactory.getSnowflake().getWorkerId() << 12)));
+
+    }
+
+
+    /**
+     * 测试当appUrl下,大于等于最后创建节点记录的节点都被占用时,从0开始重新寻找可用节点
+     */
+    @Test
+    public void cycleTest() {
+
+        for (long i = 0L; i < 50L; i++) {
+            createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i));
+        }
+        for (long i = 1000L; i < 1024L; i++) {
+            createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i));
+        }
+        setData(SNOWFLAKEU_URL + appUrl, Long.toString(1000L).getBytes());
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(50L)), notNullValue());
+
+        assertThat("Zookeeper Sequence Record is not equal!", Long.valueOf(new String(getData(SNOWFLAKEU_URL + appUrl))), equalTo(50L));
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(50L));
+
+        assertThat("GeneratedID is not equal!", SnowflakeZkFactory.getSnowflake().getId(), equalTo((SnowflakeZkFactory.getSnowflake().getLastTimestamp() << 22) + (SnowflakeZkFactory.getSnowflake().getWorkerId() << 12)));
+
+    }
+
+    /**
+     * 测试当appUrl下节点数满,达到1024个时,不再注册并抛出异常
+     */
+    @Test
+    public void whenFullTest() {
+
+        for (long i = 0L; i < 1023L; i++) {
+            createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i));
+        }
+
+        createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1023L));
+        setData(SNOWFLAKEU_URL + appUrl, Long.toString(1023L).getBytes());
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("The snowflake node is full! The max node amount is 1024.");
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+    }
+
+    /**
+     * 测试关闭后节点ID进入隔离,重新创建时不会立即重用该节点ID
+     */
+    @Test
+    public void quarantineTest() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        long lastTimestamp = SnowflakeZkFactory.getSnowflake().getLastTimestamp();
+        SnowflakeZkFactory.getSnowflake().getId();
+        lastTimestamp = Math.max(lastTimestamp, SnowflakeZkFactory.getSnowflake().getLastTimestamp());
+
+        SnowflakeZkFactory.close();
+
+        assertThat("SnowflakeNode is not deleted!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), equalTo(null));
+
+        assertThat("Released timestamp is not recorded!", readLedger()[0] >= lastTimestamp, equalTo(true));
+
+        //只有节点ID 0 可用(其余均被占用),但节点ID 0 仍处于隔离时间内
+        setData(SNOWFLAKEU_URL + appUrl, Long.toString(1023L).getBytes());
+        for (long i = 1L; i < 1024L; i++) {
+            createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i));
+        }
+
+        long quarantinedUntil = readLedger()[0] + 10 * 1000L;
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage(String.format("All free snowflake nodes are quarantined until %tF %<tT.%<tL!", quarantinedUntil));
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+    }
+
+    /**
+     * 测试隔离时间过后,优先选择最早释放的节点ID
+     */
+    @Test
+    public void leastRecentlyReleasedTest() {
+
+        long now = System.currentTimeMillis();
+        long[] ledger = new long[1024];
+        for (int i = 0; i < ledger.length; i++) {
+            ledger[i] = now - 1000L + i % 100;
+        }
+        ledger[7] = now - 2000L;
+        ledger[8] = now + 60 * 1000L;
+        writeLedger(ledger);
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl, null, true, 0L, 1L, 500L);
+
+        assertThat("WorkerId is not the least recently released one!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(7L));
+
+        assertThat("Slot is not marked as held!", readLedger()[7], equalTo(-1L));
+
+    }
+
+    /**
+     * 测试账本中未记录的已存在节点,注册时跳过该节点ID,并在账本中标记为使用中
+     */
+    @Test
+    public void unrecordedNodeTest() {
+
+        createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L));
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(1L));
+
+        assertThat("Existing node is not marked as held!", readLedger()[0], equalTo(-1L));
+
+    }
+
+    /**
+     * 测试账本中记录为使用中但节点已不存在(持有者异常退出)的节点ID,被回收并进入隔离
+     */
+    @Test
+    public void reclaimDeadSlotTest() {
+
+        long[] ledger = new long[1024];
+        for (int i = 0; i < ledger.length; i++) {
+            ledger[i] = -1L;
+        }
+        writeLedger(ledger);
+
+        try {
+            SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+            fail("All free snowflake nodes should be quarantined!");
+        } catch (IllegalStateException e) {
+            assertThat("Exception message is not equal!", e.getMessage().startsWith("All free snowflake nodes are quarantined until"), equalTo(true));
+        }
+
+        assertThat("Dead slot is not quarantined!", readLedger()[0] > 0, equalTo(true));
+
+    }
+
+    /**
+     * 测试区分区域时,在本区域的App节点下分配区域内节点ID,并可从ID中读取区域标识
+     */
+    @Test
+    public void regionTest() {
+
+        String regionPath = SNOWFLAKEU_URL + "/region-5" + appUrl;
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl, 3, 5L);
+
+        assertThat("SnowflakeNode is not created!", checkExists(regionPath + "/" + String.valueOf(0L)), notNullValue());
+
+        assertThat("SnowflakeNode is created in the global app node!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), equalTo(null));
+
+        assertThat("WorkerId is not equal!", SnowflakeZkFactory.getSnowflake().getWorkerId(), equalTo(5L << 7));
+
+        long id = SnowflakeZkFactory.getSnowflake().getId();
+
+        assertThat("RegionId is not equal!", SnowflakeZkFactory.getLayout().regionOf(id), equalTo(5L));
+
+        assertThat("LocalWorkerId is not equal!", SnowflakeZkFactory.getLayout().localWorkerIdOf(id), equalTo(0L));
+
+    }
+
+    /**
+     * 测试区分区域时,区域内节点数满时不再注册并抛出异常
+     */
+    @Test
+    public void regionFullTest() {
+
+        String regionPath = SNOWFLAKEU_URL + "/region-1" + appUrl;
+        createPersistent(regionPath);
+        for (long i = 0L; i < 128L; i++) {
+            createEphemeral(regionPath + "/" + String.valueOf(i));
+        }
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("The snowflake node is full! The max node amount is 128.");
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl, 3, 1L);
+
+    }
+
+    /**
+     * 测试从App节点再分配一组节点ID创建Snowflake池
+     */
+    @Test
+    public void poolTest() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        SnowflakePool pool = SnowflakeZkFactory.newPool(4);
+
+        assertThat("WorkerIds are not equal!", pool.getWorkerIds(), equalTo(new long[]{1L, 2L, 3L, 4L}));
+
+        for (long i = 1L; i <= 4L; i++) {
+            assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i)), notNullValue());
+        }
+
+        pool.close();
+
+        for (long i = 1L; i <= 4L; i++) {
+            assertThat("SnowflakeNode is not deleted!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i)), equalTo(null));
+        }
+
+    }
+
+    /**
+     * 测试从App节点分配按负载伸缩的Snowflake
+     */
+    @Test
+    public void elasticTest() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        ElasticSnowflake elastic = SnowflakeZkFactory.newElastic(4);
+
+        assertThat("WorkerIds are not equal!", elastic.getWorkerIds(), equalTo(new long[]{1L}));
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), notNullValue());
+
+        elastic.close();
+
+        assertThat("SnowflakeNode is not deleted!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), equalTo(null));
+
+    }
+
+    /**
+     * 测试租用节点ID的时间窗口,释放后窗口结束前节点ID不会被重新分配
+     */
+    @Test
+    public void leaseTest() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        IdLease lease = SnowflakeZkFactory.lease(60 * 1000L);
+
+        assertThat("WorkerId is not equal!", lease.getWorkerId(), equalTo(1L));
+        assertThat("Capacity is not equal!", lease.capacity(), equalTo(60 * 1000L * 4096));
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), notNullValue());
+        assertThat("Lease window is not recorded!", new String(getData(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L))), equalTo(lease.getStartTimestamp() + "-" + lease.getEndTimestamp()));
+        assertThat("Lease end is not recorded!", readLedger()[1], equalTo(lease.getEndTimestamp()));
+
+        long id = lease.getId(lease.capacity() - 1);
+        assertThat("Id is not contained!", lease.contains(id), equalTo(true));
+        assertThat("Id is contained!", lease.contains(SnowflakeZkFactory.getSnowflake().getId()), equalTo(false));
+
+        SnowflakeZkFactory.releaseLease(lease);
+
+        assertThat("SnowflakeNode is not deleted!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), equalTo(null));
+        assertThat("Lease end is changed!", readLedger()[1], equalTo(lease.getEndTimestamp()));
+
+        SnowflakePool pool = SnowflakeZkFactory.newPool(1);
+        assertThat("Leased workerId is reallocated!", pool.getWorkerIds()[0], equalTo(2L));
+        pool.close();
+
+    }
+
+    /**
+     * 测试异步注册
+     */
+    @Test
+    public void asyncInitTest() throws Exception {
+
+        CompletableFuture<Snowflake> future = SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 10 * 1000L);
+
+        Snowflake snowflake = future.get(10, TimeUnit.SECONDS);
+
+        assertThat("Snowflake is not equal!", SnowflakeZkFactory.getSnowflake(), equalTo(snowflake));
+        assertThat("WorkerId is not equal!", snowflake.getWorkerId(), equalTo(0L));
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L)), notNullValue());
+        assertThat("Snowflake is not registered!", SnowflakeZkFactory.isRegistered(), equalTo(true));
+
+    }
+
+    /**
+     * 测试以后台操作异步注册节点ID,已存在的节点被跳过,注册完成的节点ID由acquire直接返回
+     */
+    @Test
+    public void reserveAsyncTest() throws Exception {
+
+        createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(0L));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ZkWorkerIdAllocator allocator = ZkWorkerIdAllocator.createAsync(client, appUrl, 10 * 1000L, 0, 0L, false, executor).get(10, TimeUnit.SECONDS);
+
+        long workerId = allocator.reserveAsync(executor).get(10, TimeUnit.SECONDS);
+
+        assertThat("WorkerId is not equal!", workerId, equalTo(1L));
+        assertThat("SnowflakeNode is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), notNullValue());
+        assertThat("Existing node is not marked as held!", readLedger()[0], equalTo(-1L));
+
+        assertThat("Reserved workerId is not acquired!", allocator.acquire(null), equalTo(1L));
+        assertThat("Reserved workerId is registered again!", checkExists(SNOWFLAKEU_URL + appUrl).getNumChildren(), equalTo(2));
+        assertThat("WorkerId is not held!", allocator.isHeld(1L), equalTo(true));
+
+        allocator.release(1L, System.currentTimeMillis());
+        allocator.close();
+        executor.shutdown();
+
+    }
+
+    /**
+     * 测试Zookeeper不可用时,异步注册在超时后结束,不会一直阻塞
+     */
+    @Test
+    public void asyncDeadlineTest() throws Exception {
+
+        server.stop();
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<Snowflake> future = SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 500L);
+        assertThat("Init is blocked!", System.currentTimeMillis() - start < 500L, equalTo(true));
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Snowflake is registered!");
+        } catch (ExecutionException e) {
+            assertThat("Cause is not timeout!", e.getCause(), instanceOf(TimeoutException.class));
+        }
+
+        server.restart();
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Snowflake must be build first!");
+        SnowflakeZkFactory.getSnowflake();
+
+    }
+
+    /**
+     * 测试Zookeeper不可用时由持久化的租约降级启动,注册完成后切换到新的节点ID
+     */
+    @Test
+    public void degradedStartTest() throws Exception {
+
+        File leaseFile = new File(folder.getRoot(), "snowflake.lease");
+
+        SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 10 * 1000L, leaseFile, 60 * 1000L).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && !leaseFile.isFile(); i++) {
+            Thread.sleep(100L);
+        }
+        assertThat("Lease is not persisted!", leaseFile.isFile(), equalTo(true));
+        assertThat("Leased node is not created!", checkExists(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L)), notNullValue());
+        SnowflakeZkFactory.close();
+
+        server.stop();
+
+        CompletableFuture<Snowflake> future = SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 500L, leaseFile, 60 * 1000L);
+
+        assertThat("Degraded snowflake is not ready!", future.isDone(), equalTo(true));
+        assertThat("Snowflake is not degraded!", SnowflakeZkFactory.isDegraded(), equalTo(true));
+        assertThat("Snowflake is registered!", SnowflakeZkFactory.isRegistered(), equalTo(false));
+        Snowflake snowflake = future.get();
+        assertThat("Leased workerId is not equal!", snowflake.getWorkerId(), equalTo(1L));
+        assertThat("Leased workerId is not equal!", snowflake.getId() >> 12 & 1023L, equalTo(1L));
+
+        server.restart();
+        for (int i = 0; i < 300 && SnowflakeZkFactory.isDegraded(); i++) {
+            Thread.sleep(100L);
+        }
+
+        assertThat("Snowflake is degraded!", SnowflakeZkFactory.isDegraded(), equalTo(false));
+        assertThat("Snowflake is not registered!", SnowflakeZkFactory.isRegistered(), equalTo(true));
+        assertThat("Snowflake is not switched!", snowflake.getWorkerId() != 1L, equalTo(true));
+        assertThat("WorkerId is not equal!", snowflake.getId() >> 12 & 1023L, equalTo(snowflake.getWorkerId()));
+
+    }
+
+    /**
+     * 测试续期时原地延长租约,不占用新的节点ID
+     */
+    @Test
+    public void renewLeaseTest() throws Exception {
+
+        File leaseFile = new File(folder.getRoot(), "snowflake.lease");
+
+        SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 10 * 1000L, leaseFile, 1000L).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && readLedger()[1] <= 0; i++) {
+            Thread.sleep(100L);
+        }
+        long firstEnd = readLedger()[1];
+        assertThat("Lease end is not recorded!", firstEnd > 0, equalTo(true));
+
+        //至少续期两次
+        Thread.sleep(1500L);
+
+        long[] ledger = readLedger();
+        assertThat("Lease end is not extended!", ledger[1] > firstEnd, equalTo(true));
+        assertThat("Renewal takes a new workerId!", ledger[2], equalTo(0L));
+        assertThat("Lease window is not updated!", new String(getData(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(1L))).endsWith("-" + ledger[1]), equalTo(true));
+
+    }
+
+    /**
+     * 测试当前时间不晚于持久化的高水位(时钟回拨)时不降级启动,避免重复生成上次降级运行中的ID
+     */
+    @Test
+    public void degradedClockBehindTest() throws Exception {
+
+        File leaseFile = new File(folder.getRoot(), "snowflake.lease");
+
+        SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 10 * 1000L, leaseFile, 60 * 1000L).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && !leaseFile.isFile(); i++) {
+            Thread.sleep(100L);
+        }
+        SnowflakeZkFactory.close();
+
+        server.stop();
+
+        SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 500L, leaseFile, 60 * 1000L).get().getId();
+        assertThat("Snowflake is not degraded!", SnowflakeZkFactory.isDegraded(), equalTo(true));
+        SnowflakeZkFactory.close();
+
+        //高水位在最后生成ID的时间之后,立即重启时当前时间仍不晚于高水位
+        CompletableFuture<Snowflake> future = SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 500L, leaseFile, 60 * 1000L);
+        assertThat("Snowflake is degraded!", SnowflakeZkFactory.isDegraded(), equalTo(false));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Snowflake is registered!");
+        } catch (ExecutionException e) {
+            assertThat("Cause is not timeout!", e.getCause(), instanceOf(TimeoutException.class));
+        }
+
+        server.restart();
+
+    }
+
+    /**
+     * 测试降级启动后注册失败时,按退避重新注册,Zookeeper恢复后切换到新的节点ID
+     */
+    @Test
+    public void degradedRetryTest() throws Exception {
+
+        File leaseFile = new File(folder.getRoot(), "snowflake.lease");
+
+        SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 10 * 1000L, leaseFile, 60 * 1000L).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && !leaseFile.isFile(); i++) {
+            Thread.sleep(100L);
+        }
+        assertThat("Lease is not persisted!", leaseFile.isFile(), equalTo(true));
+        SnowflakeZkFactory.close();
+
+        //App节点已满,首次注册失败
+        for (long i = 0L; i < 1024L; i++) {
+            createEphemeral(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(i));
+        }
+
+        Snowflake snowflake = SnowflakeZkFactory.initAsync(server.getConnectString(), appUrl, 500L, leaseFile, 60 * 1000L).get();
+        Thread.sleep(500L);
+        assertThat("Snowflake is not degraded!", SnowflakeZkFactory.isDegraded(), equalTo(true));
+        assertThat("Leased workerId is not equal!", snowflake.getWorkerId(), equalTo(1L));
+
+        deleteNode(SNOWFLAKEU_URL + appUrl + "/" + String.valueOf(500L));
+        for (int i = 0; i < 300 && SnowflakeZkFactory.isDegraded(); i++) {
+            Thread.sleep(100L);
+        }
+
+        assertThat("Snowflake is degraded!", SnowflakeZkFactory.isDegraded(), equalTo(false));
+        assertThat("WorkerId is not equal!", snowflake.getWorkerId(), equalTo(500L));
+
+    }
+
+    /**
+     * 测试连接是否关闭
+     */
+    @Test
+    public void testClose() {
+
+        SnowflakeZkFactory.init(server.getConnectString(), appUrl);
+
+        assertThat("generatedID is not equal!", SnowflakeZkFactory.getSnowflake().getId(), equalTo((SnowflakeZkFactory.getSnowflake().getLastTimestamp() << 22) + (SnowflakeZkFactory.getSnowflake().getWorkerId() << 12)));
+
+        SnowflakeZkFactory.close();
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Snowflake must be build first!");
+        SnowflakeZkFactory.getSnowflake();
+
+    }
+
+    private static void createEphemeral(String path) {
+        try {
+            client.create().withMode(CreateMode.EPHEMERAL).forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static void createPersistent(String path) {
+        try {
+            client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static void setAcl(String path, String scheme, String idPassword) {
+        try {
+            Id id = new Id(scheme, DigestAuthenticationProvider.generateDigest(idPassword));
+            ACL acl = new ACL(ZooDefs.Perms.ALL, id);
+            List<ACL> acls = new ArrayList<>();
+            acls.add(acl);
+            client.setACL().withACL(acls).forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static long[] readLedger() {
+        ByteBuffer buffer = ByteBuffer.wrap(getData(QUARANTINE_URL + appUrl));
+        long[] ledger = new long[1024];
+        for (int i = 0; i < ledger.length; i++) {
+            ledger[i] = buffer.getLong();
+        }
+        return ledger;
+    }
+
+    private static void writeLedger(long[] ledger) {
+        ByteBuffer buffer = ByteBuffer.allocate(ledger.length * 8);
+        for (long each : ledger) {
+            buffer.putLong(each);
+        }
+        try {
+            client.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(QUARANTINE_URL + appUrl, buffer.array());
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static byte[] getData(String path) {
+        try {
+            return client.getData().forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static Stat setData(String path, byte[] data) {
+        try {
+            return client.setData().forPath(path, data);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static Void deleteNode(String path) {
+        try {
+            return client.delete().deletingChildrenIfNeeded().forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static Stat checkExists(String path) {
+        try {
+            return client.checkExists().forPath(path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+}